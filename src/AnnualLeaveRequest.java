@@ -10,18 +10,4 @@ public class AnnualLeaveRequest extends LeaveRequest {
     public LeaveType getLeaveType() {
         return LeaveType.ANNUAL;
     }
-
-    @Override
-    public boolean isValid() {
-        int days = getNumberOfDays();
-        if (employee.getAnnualLeaveBalance() < days) {
-            System.out.println("Insufficient annual leave balance");
-            return false;
-        }
-        if (days > 14) {
-            System.out.println("Annual leave cannot exceed 14 days at once");
-            return false;
-        }
-        return employee.getAnnualLeaveBalance() >= getNumberOfDays();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one batch drained from the pending approval queue.
+ */
+public class ApprovalBatchResult {
+    private final int batchNumber;
+    private final List<Decision> decisions = new ArrayList<>();
+    private int approvedCount;
+    private int deniedCount;
+
+    public ApprovalBatchResult(int batchNumber) {
+        this.batchNumber = batchNumber;
+    }
+
+    public static class Decision {
+        private final int requestId;
+        private final int employeeId;
+        private final boolean approved;
+        private final String reason;
+        private final int daysCharged;
+        private final long decidedAtMillis;
+
+        public Decision(int requestId, int employeeId, boolean approved, String reason) {
+            this(requestId, employeeId, approved, reason, 0);
+        }
+
+        public Decision(int requestId, int employeeId, boolean approved, String reason, int daysCharged) {
+            this(requestId, employeeId, approved, reason, daysCharged, System.currentTimeMillis());
+        }
+
+        public Decision(int requestId, int employeeId, boolean approved, String reason, int daysCharged,
+                long decidedAtMillis) {
+            this.requestId = requestId;
+            this.employeeId = employeeId;
+            this.approved = approved;
+            this.reason = reason;
+            this.daysCharged = daysCharged;
+            this.decidedAtMillis = decidedAtMillis;
+        }
+
+        public int getRequestId() {
+            return requestId;
+        }
+
+        public int getEmployeeId() {
+            return employeeId;
+        }
+
+        public boolean isApproved() {
+            return approved;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        // Days deducted from the balance; 0 for denials
+        public int getDaysCharged() {
+            return daysCharged;
+        }
+
+        // When the status history recorded the decision
+        public long getDecidedAtMillis() {
+            return decidedAtMillis;
+        }
+    }
+
+    public void addDecision(Decision decision) {
+        decisions.add(decision);
+        if (decision.isApproved()) {
+            approvedCount++;
+        } else {
+            deniedCount++;
+        }
+    }
+
+    public int getBatchNumber() {
+        return batchNumber;
+    }
+
+    public List<Decision> getDecisions() {
+        return Collections.unmodifiableList(decisions);
+    }
+
+    public int getApprovedCount() {
+        return approvedCount;
+    }
+
+    public int getDeniedCount() {
+        return deniedCount;
+    }
+
+    public int size() {
+        return decisions.size();
+    }
+
+    public void displaySummary() {
+        System.out.printf("Batch %d: %d approved, %d denied%n",
+                batchNumber, approvedCount, deniedCount);
+        decisions.stream()
+                .filter(d -> !d.isApproved())
+                .forEach(d -> System.out.printf("  Request #%d denied: %s%n", d.getRequestId(), d.getReason()));
+    }
+}
@@ -0,0 +1,347 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Orders pending requests by how soon they must be decided.
+ *
+ * A request's deadline is the earlier of its start date less the type's
+ * lead time and the day it was created plus the type's SLA. The creation
+ * day comes from the request's status history, so a restart that queues
+ * the request again keeps its deadline. Ties go to the
+ * more urgent leave type, then to the earlier start, then to the older
+ * request. Each department has its own indexed binary heap and lock, so
+ * approvers working on different departments never contend. Approvers can
+ * be assigned departments; {@link #pollFor(String)} then takes the most
+ * urgent request among those. Removal by request ID, e.g. on
+ * cancellation, is O(log n).
+ */
+public class ApprovalScheduler {
+    // Days before the start date a decision is due, and days allowed after creation
+    private static final Map<LeaveRequest.LeaveType, Integer> DEFAULT_LEAD_DAYS = new EnumMap<>(Map.of(
+            LeaveRequest.LeaveType.SICK, 0,
+            LeaveRequest.LeaveType.ANNUAL, 7,
+            LeaveRequest.LeaveType.MATERNITY, 30,
+            LeaveRequest.LeaveType.PATERNITY, 14,
+            LeaveRequest.LeaveType.UNPAID, 7));
+    private static final Map<LeaveRequest.LeaveType, Integer> DEFAULT_SLA_DAYS = new EnumMap<>(Map.of(
+            LeaveRequest.LeaveType.SICK, 1,
+            LeaveRequest.LeaveType.ANNUAL, 5,
+            LeaveRequest.LeaveType.MATERNITY, 5,
+            LeaveRequest.LeaveType.PATERNITY, 5,
+            LeaveRequest.LeaveType.UNPAID, 10));
+
+    private final int[] leadDays;
+    private final int[] slaDays;
+    private final IntSupplier today;
+
+    private final Map<String, DepartmentQueue> queues = new ConcurrentHashMap<>();
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> approverDepartments = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public ApprovalScheduler() {
+        this(DEFAULT_LEAD_DAYS, DEFAULT_SLA_DAYS);
+    }
+
+    /**
+     * Types missing from either map get no lead time and no SLA limit.
+     */
+    public ApprovalScheduler(Map<LeaveRequest.LeaveType, Integer> leadDays,
+            Map<LeaveRequest.LeaveType, Integer> slaDays) {
+        this(leadDays, slaDays, () -> (int) LocalDate.now().toEpochDay());
+    }
+
+    // today supplies the current epoch day, for tests and simulations
+    ApprovalScheduler(Map<LeaveRequest.LeaveType, Integer> leadDays,
+            Map<LeaveRequest.LeaveType, Integer> slaDays, IntSupplier today) {
+        LeaveRequest.LeaveType[] types = LeaveRequest.LeaveType.values();
+        this.leadDays = new int[types.length];
+        this.slaDays = new int[types.length];
+        for (LeaveRequest.LeaveType type : types) {
+            this.leadDays[type.ordinal()] = leadDays.getOrDefault(type, 0);
+            this.slaDays[type.ordinal()] = slaDays.getOrDefault(type, Integer.MAX_VALUE / 2);
+        }
+        this.today = today;
+    }
+
+    private static class Entry {
+        final LeaveRequest request;
+        final int deadline;
+        final int typeRank;
+        final int startDay;
+        DepartmentQueue queue;
+        int heapIndex;
+
+        Entry(LeaveRequest request, int deadline, int typeRank) {
+            this.request = request;
+            this.deadline = deadline;
+            this.typeRank = typeRank;
+            this.startDay = (int) request.getStartDate().toEpochDay();
+        }
+
+        boolean isMoreUrgentThan(Entry other) {
+            if (deadline != other.deadline)
+                return deadline < other.deadline;
+            if (typeRank != other.typeRank)
+                return typeRank < other.typeRank;
+            if (startDay != other.startDay)
+                return startDay < other.startDay;
+            return request.getRequestId() < other.request.getRequestId();
+        }
+    }
+
+    // Binary min-heap whose entries know their position, guarded by its monitor
+    private static class DepartmentQueue {
+        private Entry[] heap = new Entry[16];
+        private int size;
+
+        void add(Entry entry) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            entry.queue = this;
+            entry.heapIndex = size;
+            heap[size++] = entry;
+            siftUp(entry.heapIndex);
+        }
+
+        Entry peek() {
+            return size == 0 ? null : heap[0];
+        }
+
+        void remove(Entry entry) {
+            int index = entry.heapIndex;
+            Entry last = heap[--size];
+            heap[size] = null;
+            entry.queue = null;
+            if (index == size)
+                return;
+            heap[index] = last;
+            last.heapIndex = index;
+            siftDown(index);
+            if (heap[index] == last) {
+                siftUp(index);
+            }
+        }
+
+        private void siftUp(int index) {
+            Entry entry = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!entry.isMoreUrgentThan(heap[parent]))
+                    break;
+                place(heap[parent], index);
+                index = parent;
+            }
+            place(entry, index);
+        }
+
+        private void siftDown(int index) {
+            Entry entry = heap[index];
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                int right = child + 1;
+                if (right < size && heap[right].isMoreUrgentThan(heap[child])) {
+                    child = right;
+                }
+                if (!heap[child].isMoreUrgentThan(entry))
+                    break;
+                place(heap[child], index);
+                index = child;
+            }
+            place(entry, index);
+        }
+
+        private void place(Entry entry, int index) {
+            heap[index] = entry;
+            entry.heapIndex = index;
+        }
+    }
+
+    // Queues the request under its employee's current department; ignores duplicates
+    public void add(LeaveRequest request) {
+        LeaveRequest.LeaveType type = request.getLeaveType();
+        long startDay = request.getStartDate().toEpochDay();
+        LocalDate created = request.getCreatedDate();
+        long createdDay = created == null ? today.getAsInt() : created.toEpochDay();
+        long deadline = Math.min(startDay - leadDays[type.ordinal()],
+                createdDay + slaDays[type.ordinal()]);
+        Entry entry = new Entry(request, (int) deadline, typeRank(type));
+        if (entries.putIfAbsent(request.getRequestId(), entry) != null)
+            return;
+
+        DepartmentQueue queue = queueFor(request.getEmployee().getDepartment());
+        synchronized (queue) {
+            queue.add(entry);
+        }
+        size.incrementAndGet();
+    }
+
+    // Sick leave cannot wait; the other types are ordered by their lead time
+    private int typeRank(LeaveRequest.LeaveType type) {
+        return type == LeaveRequest.LeaveType.SICK ? 0 : 1 + leadDays[type.ordinal()];
+    }
+
+    private DepartmentQueue queueFor(String department) {
+        return queues.computeIfAbsent(department == null ? "" : department, d -> new DepartmentQueue());
+    }
+
+    // Removes the request if queued; O(log n)
+    public boolean remove(int requestId) {
+        Entry entry = entries.remove(requestId);
+        if (entry == null)
+            return false;
+        while (true) {
+            DepartmentQueue queue = entry.queue;
+            if (queue == null)
+                return false;
+            synchronized (queue) {
+                // The entry may have moved department while we waited
+                if (entry.queue == queue) {
+                    queue.remove(entry);
+                    size.decrementAndGet();
+                    return true;
+                }
+            }
+        }
+    }
+
+    // Most urgent request of the department, or null if it has none
+    public LeaveRequest poll(String department) {
+        DepartmentQueue queue = queues.get(department);
+        return queue == null ? null : pollFrom(queue);
+    }
+
+    // Most urgent request over every department
+    public LeaveRequest poll() {
+        return pollAmong(queues.keySet());
+    }
+
+    /**
+     * Most urgent request among the approver's departments, or among all
+     * departments if the approver has none assigned.
+     */
+    public LeaveRequest pollFor(String approver) {
+        Set<String> departments = approverDepartments.get(approver);
+        return departments == null ? poll() : pollAmong(departments);
+    }
+
+    private LeaveRequest pollAmong(Collection<String> departments) {
+        while (true) {
+            DepartmentQueue best = null;
+            Entry bestHead = null;
+            for (String department : departments) {
+                DepartmentQueue queue = queues.get(department);
+                if (queue == null)
+                    continue;
+                Entry head;
+                synchronized (queue) {
+                    head = queue.peek();
+                }
+                if (head != null && (bestHead == null || head.isMoreUrgentThan(bestHead))) {
+                    best = queue;
+                    bestHead = head;
+                }
+            }
+            if (best == null)
+                return null;
+            LeaveRequest request = pollFrom(best);
+            if (request != null)
+                return request;
+            // Another approver emptied that queue first; look again
+        }
+    }
+
+    private LeaveRequest pollFrom(DepartmentQueue queue) {
+        Entry head;
+        synchronized (queue) {
+            head = queue.peek();
+            if (head == null)
+                return null;
+            queue.remove(head);
+        }
+        entries.remove(head.request.getRequestId(), head);
+        size.decrementAndGet();
+        return head.request;
+    }
+
+    public LeaveRequest peek(String department) {
+        DepartmentQueue queue = queues.get(department);
+        if (queue == null)
+            return null;
+        synchronized (queue) {
+            Entry head = queue.peek();
+            return head == null ? null : head.request;
+        }
+    }
+
+    // Epoch day by which the request should be decided, or -1 if not queued
+    public long getDeadline(int requestId) {
+        Entry entry = entries.get(requestId);
+        return entry == null ? -1 : entry.deadline;
+    }
+
+    // Restricts the approver to the given departments; none lifts the restriction
+    public void assignApprover(String approver, Collection<String> departments) {
+        if (departments.isEmpty()) {
+            approverDepartments.remove(approver);
+        } else {
+            approverDepartments.put(approver, Set.copyOf(departments));
+        }
+    }
+
+    // Moves the employee's queued requests with them
+    public void onDepartmentChange(Employee employee, String fromDepartment, String toDepartment) {
+        DepartmentQueue from = queues.get(fromDepartment == null ? "" : fromDepartment);
+        if (from == null)
+            return;
+        List<Entry> moved = new ArrayList<>();
+        synchronized (from) {
+            for (int i = 0; i < from.size; i++) {
+                if (from.heap[i].request.getEmployee() == employee) {
+                    moved.add(from.heap[i]);
+                }
+            }
+            for (Entry entry : moved) {
+                from.remove(entry);
+            }
+        }
+        DepartmentQueue to = queueFor(toDepartment);
+        synchronized (to) {
+            for (Entry entry : moved) {
+                to.add(entry);
+            }
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public void clear() {
+        for (DepartmentQueue queue : queues.values()) {
+            synchronized (queue) {
+                while (queue.size > 0) {
+                    Entry head = queue.peek();
+                    queue.remove(head);
+                    entries.remove(head.request.getRequestId(), head);
+                    size.decrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that concurrent approvals never lose or double-spend a balance
+ * update. A few employees get many more pending annual-leave requests than
+ * their balance covers; worker threads then approve them one by one, drain
+ * the queue in batches and cancel at random, all at once. Afterwards each
+ * employee's balance must equal the starting balance less the days charged
+ * to its approved requests, and must not be negative, both in memory and
+ * after the data directory is reloaded from its journal.
+ *
+ * Exits with status 1 if any employee's balance is off.
+ *
+ * Usage: java ApprovalStressCheck [--employees N] [--requests-per-employee N]
+ *        [--threads N] [--balance N] [--seed N]
+ */
+public class ApprovalStressCheck {
+    private int employees = 8;
+    private int requestsPerEmployee = 500;
+    private int threads = 16;
+    private int balance = 400;
+    private long seed = 42L;
+
+    public static void main(String[] args) throws Exception {
+        ApprovalStressCheck check = new ApprovalStressCheck();
+        check.parseArgs(args);
+        System.exit(check.run() ? 0 : 1);
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--employees" -> employees = Integer.parseInt(value);
+                case "--requests-per-employee" -> requestsPerEmployee = Integer.parseInt(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--balance" -> balance = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    private boolean run() throws Exception {
+        PrintStream report = System.out;
+        report.printf("ApprovalStressCheck: %d employees, %d requests each, %d threads, balance %d, seed %d%n",
+                employees, requestsPerEmployee, threads, balance, seed);
+
+        // The system reports progress on stdout; keep it out of the results
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Path dataDir = Files.createTempDirectory("approval-stress");
+        LeaveTrackingSystem system = new LeaveTrackingSystem(dataDir, WorkingDayCalendar.ALL_DAYS);
+        List<Integer> requestIds = createRequests(system);
+
+        long start = System.nanoTime();
+        runWorkers(system, requestIds);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        boolean ok = verify(system, requestIds, "in memory", report);
+        // Reload from the journal without the compaction close() would do
+        LeaveTrackingSystem reloaded = new LeaveTrackingSystem(dataDir, WorkingDayCalendar.ALL_DAYS);
+        ok &= verify(reloaded, requestIds, "after reload", report);
+        System.setOut(report);
+
+        report.printf("%d decisions in %d ms: %s%n", requestIds.size(), elapsedMillis, ok ? "OK" : "FAILED");
+        return ok;
+    }
+
+    // Queues more one- to three-day requests per employee than the balance can cover
+    private List<Integer> createRequests(LeaveTrackingSystem system) {
+        Random random = new Random(seed);
+        LocalDate firstDay = LocalDate.now().plusDays(60);
+        List<Integer> requestIds = new ArrayList<>();
+        for (int id = 1; id <= employees; id++) {
+            Employee employee = new Employee(id, "Employee " + id, "Dept" + (id % 3), balance, 10);
+            system.addEmployee(employee);
+            for (int i = 0; i < requestsPerEmployee; i++) {
+                LocalDate start = firstDay.plusDays(4L * i);
+                LeaveRequest request = system.createLeaveRequest(employee, start,
+                        start.plusDays(random.nextInt(3)), "Stress", LeaveRequest.LeaveType.ANNUAL, false);
+                requestIds.add(request.getRequestId());
+            }
+        }
+        Collections.shuffle(requestIds, random);
+        return requestIds;
+    }
+
+    /**
+     * Every thread walks the shuffled requests from a shared cursor. Each
+     * request is approved directly, left to a batch drain or cancelled, so
+     * the same employees are updated from all threads at once.
+     */
+    private void runWorkers(LeaveTrackingSystem system, List<Integer> requestIds) throws InterruptedException {
+        AtomicInteger cursor = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            String approver = "Approver " + t;
+            Random random = new Random(seed + t);
+            pool.execute(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                int index;
+                while ((index = cursor.getAndIncrement()) < requestIds.size()) {
+                    int requestId = requestIds.get(index);
+                    int action = random.nextInt(10);
+                    if (action < 6) {
+                        system.approveRequest(requestId, approver);
+                    } else if (action < 8) {
+                        system.processPendingRequests(approver, 32);
+                    } else {
+                        system.cancelLeaveRequest(requestId, approver);
+                    }
+                }
+                system.processPendingRequests(approver, 32);
+            });
+        }
+        ready.await();
+        go.countDown();
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    // Compares each balance with the deductions its approved requests account for
+    private boolean verify(LeaveTrackingSystem system, List<Integer> requestIds, String stage,
+            PrintStream report) {
+        long[] charged = new long[employees + 1];
+        int approved = 0;
+        int pending = 0;
+        for (int requestId : requestIds) {
+            LeaveRequest request = system.getLeaveRequest(requestId);
+            if (request.getStatus() == LeaveRequest.Status.APPROVED) {
+                charged[request.getEmployee().getEmployeeId()] += request.getDaysCharged();
+                approved++;
+            } else if (request.getStatus() == LeaveRequest.Status.PENDING) {
+                pending++;
+            }
+        }
+
+        boolean ok = pending == 0;
+        if (!ok) {
+            report.printf("  %s: %d requests still pending%n", stage, pending);
+        }
+        for (int id = 1; id <= employees; id++) {
+            int actual = system.getEmployee(id).getAnnualLeaveBalance();
+            long expected = balance - charged[id];
+            if (actual != expected || actual < 0) {
+                report.printf("  %s: employee %d balance %d, expected %d%n", stage, id, actual, expected);
+                ok = false;
+            }
+        }
+        report.printf("  %s: %d approved, balances %s%n", stage, approved, ok ? "match" : "DIFFER");
+        return ok;
+    }
+}
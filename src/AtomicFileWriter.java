@@ -0,0 +1,246 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Crash-safe replacement of data files.
+ *
+ * A file is written to a temp file beside it, followed by a footer line
+ * {@code # crc32c=<hex> length=<bytes>} covering everything before it,
+ * forced to disk and renamed over the target in one atomic step. The
+ * version it replaces is kept as {@code <name>.bak}. After a crash the
+ * target is therefore either the old or the new complete file; {@link
+ * #recover} checks the footer at startup and falls back to the backup if
+ * the file is missing or damaged. Files without a footer, e.g. written by
+ * an older version or restored from a backup, are accepted unverified.
+ */
+public class AtomicFileWriter {
+    private static final String FOOTER_PREFIX = "# crc32c=";
+    private static final String LENGTH_FIELD = " length=";
+    private static final int MAX_FOOTER_LENGTH = 64;
+    private static final long CHECK_CHUNK_SIZE = 1L << 30;
+    private static final AtomicLong TEMP_COUNTER = new AtomicLong();
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String BACKUP_SUFFIX = ".bak";
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    public enum Recovery {
+        // Footer present and checksum matches
+        INTACT,
+        // No footer to check
+        UNVERIFIED,
+        // Missing or damaged; the last good version was put back
+        RESTORED_BACKUP,
+        // Neither the file nor a backup exists
+        MISSING,
+        // Damaged, with no usable backup; left in place
+        CORRUPT
+    }
+
+    public interface Content {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    public interface BinaryContent {
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    // Replaces target with the content; on failure target is left untouched
+    public static void write(Path target, Content content) throws IOException {
+        write(target, content, true);
+    }
+
+    /**
+     * As {@link #write(Path, Content)}, but leaves syncing the directory to
+     * the caller when syncDirectory is false, so that replacing many files
+     * in one directory can make all renames durable with one sync.
+     */
+    public static void write(Path target, Content content, boolean syncDirectory) throws IOException {
+        replace(target, channel -> {
+            OutputStream raw = Channels.newOutputStream(channel);
+            CheckedOutputStream checked = new CheckedOutputStream(raw, new CRC32C());
+            Writer writer = new BufferedWriter(new OutputStreamWriter(checked, StandardCharsets.UTF_8),
+                    WRITE_BUFFER_SIZE);
+            content.writeTo(writer);
+            writer.flush();
+            long length = channel.position();
+            raw.write(footer(checked.getChecksum().getValue(), length));
+        }, syncDirectory);
+    }
+
+    /**
+     * Replaces target with binary content written straight to the temp
+     * file's channel. A newline and the footer follow the content, so
+     * readers must not expect the content to run to the end of the file.
+     */
+    public static void writeBinary(Path target, BinaryContent content) throws IOException {
+        replace(target, channel -> {
+            content.writeTo(channel);
+            // The footer is only recognised at the start of a line
+            ByteBuffer newline = ByteBuffer.wrap(new byte[] { '\n' });
+            while (newline.hasRemaining()) {
+                channel.write(newline);
+            }
+            long length = channel.position();
+            ByteBuffer footer = ByteBuffer.wrap(footer(crc(channel, length), length));
+            while (footer.hasRemaining()) {
+                channel.write(footer);
+            }
+        }, true);
+    }
+
+    private static void replace(Path target, BinaryContent body, boolean syncDirectory) throws IOException {
+        Path temp = newTempPath(target);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                body.writeTo(channel);
+                channel.force(true);
+            }
+            keepBackup(target);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            if (syncDirectory) {
+                syncDirectory(target.toAbsolutePath().getParent());
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Unique per process and call, so concurrent writers never share a temp file
+    private static Path newTempPath(Path target) {
+        return target.resolveSibling(target.getFileName() + "." + ProcessHandle.current().pid()
+                + "." + TEMP_COUNTER.incrementAndGet() + TEMP_SUFFIX);
+    }
+
+    private static byte[] footer(long crc, long length) {
+        return (FOOTER_PREFIX + String.format("%08x", crc) + LENGTH_FIELD + length + "\n")
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Links the current file as the backup, so the target never goes missing
+    private static void keepBackup(Path target) throws IOException {
+        if (!Files.exists(target))
+            return;
+        Path backup = backupOf(target);
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, target);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(target, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Makes the rename durable; not every platform can open a directory
+    public static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // The rename is still atomic, only its durability is up to the OS
+        }
+    }
+
+    static Path backupOf(Path target) {
+        return target.resolveSibling(target.getFileName() + BACKUP_SUFFIX);
+    }
+
+    /**
+     * Brings target back to its last good version if it is missing or fails
+     * its checksum, and deletes temp files left by interrupted writes.
+     */
+    public static Recovery recover(Path target) throws IOException {
+        deleteLeftoverTemps(target);
+        Recovery state = check(target);
+        if (state == Recovery.INTACT || state == Recovery.UNVERIFIED)
+            return state;
+
+        Path backup = backupOf(target);
+        Recovery backupState = check(backup);
+        if (backupState != Recovery.INTACT && backupState != Recovery.UNVERIFIED)
+            return state;
+        Path temp = newTempPath(target);
+        try {
+            Files.copy(backup, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return Recovery.RESTORED_BACKUP;
+    }
+
+    // INTACT, UNVERIFIED, MISSING or CORRUPT; never changes the file
+    public static Recovery check(Path path) throws IOException {
+        if (!Files.exists(path))
+            return Recovery.MISSING;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer tail = ByteBuffer.allocate((int) Math.min(size, MAX_FOOTER_LENGTH));
+            while (tail.hasRemaining()) {
+                if (channel.read(tail, size - tail.capacity() + tail.position()) < 0)
+                    return Recovery.CORRUPT;
+            }
+            String tailText = new String(tail.array(), StandardCharsets.US_ASCII);
+            int footerAt = tailText.lastIndexOf(FOOTER_PREFIX);
+            boolean lineStart = footerAt > 0 ? tailText.charAt(footerAt - 1) == '\n' : size == tail.capacity();
+            if (footerAt < 0 || !lineStart)
+                return Recovery.UNVERIFIED;
+            // A footer that is not one whole final line means the write was torn
+            String footer = tailText.substring(footerAt);
+            if (!footer.endsWith("\n") || footer.indexOf('\n') != footer.length() - 1)
+                return Recovery.CORRUPT;
+
+            long expectedCrc;
+            long length;
+            try {
+                int lengthAt = footer.indexOf(LENGTH_FIELD);
+                expectedCrc = Long.parseLong(footer.substring(FOOTER_PREFIX.length(), lengthAt), 16);
+                length = Long.parseLong(footer.substring(lengthAt + LENGTH_FIELD.length(), footer.length() - 1));
+            } catch (RuntimeException e) {
+                return Recovery.CORRUPT;
+            }
+            if (length != size - footer.length())
+                return Recovery.CORRUPT;
+            return crc(channel, length) == expectedCrc ? Recovery.INTACT : Recovery.CORRUPT;
+        }
+    }
+
+    private static long crc(FileChannel channel, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        for (long pos = 0; pos < length; pos += CHECK_CHUNK_SIZE) {
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                    Math.min(CHECK_CHUNK_SIZE, length - pos));
+            crc.update(chunk);
+        }
+        return crc.getValue();
+    }
+
+    private static void deleteLeftoverTemps(Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        if (!Files.isDirectory(dir))
+            return;
+        String glob = target.getFileName() + "*" + TEMP_SUFFIX;
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(dir, glob)) {
+            for (Path temp : temps) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
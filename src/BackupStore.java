@@ -0,0 +1,361 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed, incremental backups of the CSV data files.
+ *
+ * Each file is cut into segments of up to 1024 consecutive IDs. A segment
+ * is stored once, gzipped, under objects/ and named by the SHA-256 of its
+ * text, so a backup only writes the segments that changed since any
+ * earlier backup. A backup itself is a small manifest listing the
+ * segments of each file; restoring one rebuilds the files exactly as they
+ * were when it was taken.
+ *
+ * Layout under the backup directory:
+ * <pre>
+ *   objects/ab/abcdef...gz          one compressed segment
+ *   backup-20240131T120000.000Z.manifest
+ * </pre>
+ */
+public class BackupStore {
+    private static final String MANIFEST_MAGIC = "LTS-BACKUP 1";
+    private static final String MANIFEST_PREFIX = "backup-";
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final String OBJECTS_DIR = "objects";
+    private static final DateTimeFormatter MANIFEST_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss.SSS'Z'").withZone(ZoneOffset.UTC);
+    // backup-<time>[-<n>].manifest, where n counts backups taken in the same millisecond
+    private static final Pattern MANIFEST_NAME =
+            Pattern.compile("backup-(\\d{8}T\\d{6}\\.\\d{3}Z)(?:-(\\d{1,9}))?\\.manifest");
+
+    // IDs id >> SEGMENT_SHIFT share a segment
+    private static final int SEGMENT_SHIFT = 10;
+
+    private final Path backupDir;
+    private final Path objectsDir;
+    // Last name handed out, so names reserved before their manifests exist still differ
+    private String lastReservedBase;
+    private int lastReservedSequence;
+
+    public BackupStore(Path backupDir) {
+        this.backupDir = backupDir;
+        this.objectsDir = backupDir.resolve(OBJECTS_DIR);
+    }
+
+    /**
+     * The rows of one data file, cut into segments as they are added.
+     * Rows must be added in ascending ID order.
+     */
+    public static class FileSnapshot {
+        private final String fileName;
+        private final String header;
+        private final List<byte[]> segments = new ArrayList<>();
+        private final List<Integer> rowCounts = new ArrayList<>();
+        private final ByteArrayOutputStream current = new ByteArrayOutputStream();
+        private long currentSegment = Long.MIN_VALUE;
+        private int currentRows;
+        private int lastId = Integer.MIN_VALUE;
+
+        public FileSnapshot(String fileName, String header) {
+            this.fileName = fileName;
+            this.header = header;
+        }
+
+        // line includes its trailing newline
+        public void addRow(int id, String line) {
+            if (id <= lastId) {
+                throw new IllegalArgumentException("Rows must be added in ascending ID order");
+            }
+            lastId = id;
+            long segment = id >> SEGMENT_SHIFT;
+            if (segment != currentSegment) {
+                finishSegment();
+                currentSegment = segment;
+            }
+            current.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+            currentRows++;
+        }
+
+        private void finishSegment() {
+            if (currentRows > 0) {
+                segments.add(current.toByteArray());
+                rowCounts.add(currentRows);
+                current.reset();
+                currentRows = 0;
+            }
+        }
+    }
+
+    // What one backup wrote
+    public static class Result {
+        private final String manifestName;
+        private final int segmentCount;
+        private final int newSegmentCount;
+        private final long bytesWritten;
+
+        Result(String manifestName, int segmentCount, int newSegmentCount, long bytesWritten) {
+            this.manifestName = manifestName;
+            this.segmentCount = segmentCount;
+            this.newSegmentCount = newSegmentCount;
+            this.bytesWritten = bytesWritten;
+        }
+
+        public String getManifestName() {
+            return manifestName;
+        }
+
+        public int getSegmentCount() {
+            return segmentCount;
+        }
+
+        public int getNewSegmentCount() {
+            return newSegmentCount;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+    }
+
+    /**
+     * Picks the manifest name for a backup taken now, distinct from every
+     * manifest on disk and every name reserved before. Call it while the
+     * rows are captured, so names follow the order the data was taken in.
+     */
+    public synchronized String reserveManifestName() {
+        String base = MANIFEST_PREFIX + MANIFEST_TIME.format(Instant.now());
+        int n = base.equals(lastReservedBase) ? lastReservedSequence + 1 : 0;
+        while (Files.exists(backupDir.resolve(manifestName(base, n)))) {
+            n++;
+        }
+        lastReservedBase = base;
+        lastReservedSequence = n;
+        return manifestName(base, n);
+    }
+
+    private static String manifestName(String base, int sequence) {
+        return sequence == 0 ? base + MANIFEST_SUFFIX : base + "-" + sequence + MANIFEST_SUFFIX;
+    }
+
+    /**
+     * Stores the segments not already present and writes the manifest for
+     * the files under a name from {@link #reserveManifestName}. The manifest
+     * is written last, so a failed backup never leaves a manifest pointing
+     * at missing segments.
+     */
+    public Result backup(String manifestName, List<FileSnapshot> files) throws IOException {
+        Instant created = getCreated(manifestName);
+        Files.createDirectories(objectsDir);
+        StringBuilder manifest = new StringBuilder(MANIFEST_MAGIC).append('\n');
+        manifest.append("created ").append(created).append('\n');
+
+        int segmentCount = 0;
+        int newSegmentCount = 0;
+        long bytesWritten = 0;
+        for (FileSnapshot file : files) {
+            file.finishSegment();
+            manifest.append("file ").append(file.fileName).append(' ').append(file.header).append('\n');
+            for (int i = 0; i < file.segments.size(); i++) {
+                byte[] segment = file.segments.get(i);
+                String hash = sha256(segment);
+                long written = storeObject(hash, segment);
+                if (written > 0) {
+                    newSegmentCount++;
+                    bytesWritten += written;
+                }
+                segmentCount++;
+                manifest.append("segment ").append(hash).append(' ').append(file.rowCounts.get(i)).append('\n');
+            }
+        }
+
+        byte[] manifestBytes = manifest.toString().getBytes(StandardCharsets.UTF_8);
+        writeAtomically(backupDir.resolve(manifestName), manifestBytes);
+        bytesWritten += manifestBytes.length;
+        return new Result(manifestName, segmentCount, newSegmentCount, bytesWritten);
+    }
+
+    // Manifest names, oldest first
+    public List<String> listBackups() throws IOException {
+        List<String> names = new ArrayList<>();
+        if (!Files.isDirectory(backupDir))
+            return names;
+        try (Stream<Path> paths = Files.list(backupDir)) {
+            paths.map(p -> p.getFileName().toString())
+                    .filter(BackupStore::isManifestName)
+                    .forEach(names::add);
+        }
+        // Plain string order would put "...Z-1.manifest" before "...Z.manifest"
+        names.sort(Comparator.comparing(this::getCreated).thenComparingInt(BackupStore::sequenceOf));
+        return names;
+    }
+
+    // True for a plain manifest file name as written by backup()
+    public static boolean isManifestName(String name) {
+        return name != null && MANIFEST_NAME.matcher(name).matches();
+    }
+
+    private static Matcher parse(String manifestName) {
+        Matcher matcher = MANIFEST_NAME.matcher(manifestName == null ? "" : manifestName);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a backup manifest name: " + manifestName);
+        }
+        return matcher;
+    }
+
+    // 0 for the first backup of a millisecond, n for the one named "-n"
+    private static int sequenceOf(String manifestName) {
+        String sequence = parse(manifestName).group(2);
+        return sequence == null ? 0 : Integer.parseInt(sequence);
+    }
+
+    // Newest backup taken at or before the given time, or null if none was
+    public String findBackup(Instant pointInTime) throws IOException {
+        String found = null;
+        for (String name : listBackups()) {
+            if (getCreated(name).isAfter(pointInTime))
+                break;
+            found = name;
+        }
+        return found;
+    }
+
+    public Instant getCreated(String manifestName) {
+        return MANIFEST_TIME.parse(parse(manifestName).group(1), Instant::from);
+    }
+
+    /**
+     * Rebuilds every file listed in the manifest inside targetDir, replacing
+     * the files there. Each segment is checked against its hash first.
+     */
+    public void restore(String manifestName, Path targetDir) throws IOException {
+        // Only names listed by this store, never paths into or out of it
+        if (!isManifestName(manifestName)) {
+            throw new IOException("Not a backup manifest name: " + manifestName);
+        }
+        List<String> lines = Files.readAllLines(backupDir.resolve(manifestName), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(MANIFEST_MAGIC)) {
+            throw new IOException("Not a backup manifest: " + manifestName);
+        }
+
+        String fileName = null;
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        List<Path> restored = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] parts = line.split(" ", 3);
+            switch (parts[0]) {
+                case "file" -> {
+                    if (fileName != null) {
+                        restored.add(writeTemp(targetDir, fileName, content.toByteArray()));
+                    }
+                    fileName = parts[1];
+                    content.reset();
+                    content.writeBytes((parts.length > 2 ? parts[2] : "").getBytes(StandardCharsets.UTF_8));
+                    content.write('\n');
+                }
+                case "segment" -> {
+                    if (fileName == null) {
+                        throw new IOException("Segment before any file in " + manifestName);
+                    }
+                    content.writeBytes(readObject(parts[1]));
+                }
+                default -> {
+                    // created and any later header lines carry no file data
+                }
+            }
+        }
+        if (fileName != null) {
+            restored.add(writeTemp(targetDir, fileName, content.toByteArray()));
+        }
+
+        // Every segment has been read and verified before any file is replaced
+        for (Path temp : restored) {
+            String name = temp.getFileName().toString();
+            Files.move(temp, targetDir.resolve(name.substring(0, name.length() - ".restore".length())),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private Path writeTemp(Path targetDir, String fileName, byte[] content) throws IOException {
+        Path temp = targetDir.resolve(fileName + ".restore");
+        Files.write(temp, content);
+        return temp;
+    }
+
+    // Returns the compressed size written, or 0 if the segment was already stored
+    private long storeObject(String hash, byte[] segment) throws IOException {
+        Path path = objectPath(hash);
+        if (Files.exists(path))
+            return 0;
+
+        Files.createDirectories(path.getParent());
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(segment.length / 4);
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(segment);
+        }
+        writeAtomically(path, compressed.toByteArray());
+        return compressed.size();
+    }
+
+    private byte[] readObject(String hash) throws IOException {
+        Path path = objectPath(hash);
+        if (!Files.exists(path)) {
+            throw new IOException("Missing backup segment " + hash);
+        }
+        byte[] segment;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            segment = in.readAllBytes();
+        }
+        if (!sha256(segment).equals(hash)) {
+            throw new IOException("Corrupt backup segment " + hash);
+        }
+        return segment;
+    }
+
+    private Path objectPath(String hash) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash + ".gz");
+    }
+
+    // Concurrent backups storing the same segment each write their own temp file
+    private static void writeAtomically(Path path, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest(data)) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
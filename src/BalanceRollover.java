@@ -0,0 +1,115 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Year-end rollover of annual and sick balances over many employees.
+ *
+ * The employees are split in halves on the common fork-join pool until a
+ * slice is small enough to update directly; each slice returns its own
+ * totals, which are summed on the way back up, so no counters are shared
+ * between threads. Each employee is updated under its lock stripe, like a
+ * deduction, so a concurrent approval sees either the old or the new year.
+ */
+public class BalanceRollover {
+    private static final int LEAF_SIZE = 2048;
+
+    private final RolloverPolicy annualPolicy;
+    private final RolloverPolicy sickPolicy;
+
+    public BalanceRollover(RolloverPolicy annualPolicy, RolloverPolicy sickPolicy) {
+        this.annualPolicy = annualPolicy;
+        this.sickPolicy = sickPolicy;
+    }
+
+    public static class Result {
+        private final int employeeCount;
+        private final long daysCarried;
+        private final long daysForfeited;
+        private final long daysAccrued;
+
+        Result(int employeeCount, long daysCarried, long daysForfeited, long daysAccrued) {
+            this.employeeCount = employeeCount;
+            this.daysCarried = daysCarried;
+            this.daysForfeited = daysForfeited;
+            this.daysAccrued = daysAccrued;
+        }
+
+        Result plus(Result other) {
+            return new Result(employeeCount + other.employeeCount, daysCarried + other.daysCarried,
+                    daysForfeited + other.daysForfeited, daysAccrued + other.daysAccrued);
+        }
+
+        public int getEmployeeCount() {
+            return employeeCount;
+        }
+
+        // Unused days kept across the boundary, net of overdrawn balances
+        public long getDaysCarried() {
+            return daysCarried;
+        }
+
+        // Unused days above the carry-over caps
+        public long getDaysForfeited() {
+            return daysForfeited;
+        }
+
+        public long getDaysAccrued() {
+            return daysAccrued;
+        }
+    }
+
+    public Result run(Employee[] employees) {
+        return ForkJoinPool.commonPool().invoke(new Slice(employees, 0, employees.length));
+    }
+
+    private class Slice extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+        private final Employee[] employees;
+        private final int from;
+        private final int to;
+
+        Slice(Employee[] employees, int from, int to) {
+            this.employees = employees;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= LEAF_SIZE)
+                return rollOver();
+            int middle = (from + to) >>> 1;
+            Slice left = new Slice(employees, from, middle);
+            left.fork();
+            Result right = new Slice(employees, middle, to).compute();
+            return left.join().plus(right);
+        }
+
+        private Result rollOver() {
+            long carried = 0;
+            long forfeited = 0;
+            long accrued = 0;
+            for (int i = from; i < to; i++) {
+                Employee employee = employees[i];
+                ReentrantLock lock = EmployeeLockStripes.lockFor(employee.getEmployeeId());
+                lock.lock();
+                try {
+                    synchronized (employee) {
+                        int annual = employee.getAnnualLeaveBalance();
+                        int sick = employee.getSickLeaveBalance();
+                        carried += annualPolicy.carriedOver(annual) + sickPolicy.carriedOver(sick);
+                        forfeited += annual - annualPolicy.carriedOver(annual)
+                                + sick - sickPolicy.carriedOver(sick);
+                        accrued += annualPolicy.getAccrual() + sickPolicy.getAccrual();
+                        employee.setAnnualLeaveBalance(annualPolicy.newBalance(annual));
+                        employee.setSickLeaveBalance(sickPolicy.newBalance(sick));
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return new Result(to - from, carried, forfeited, accrued);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot of employees, leave requests and their status
+ * history.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header    magic "LTSB", version u16, reserved u16, nextRequestId,
+ *           string count, employee count, request count, history count
+ * strings   u16 length + UTF-8 bytes each; every name, department,
+ *           reason and approver is stored once
+ * employees 20-byte records: id, name, department, annual, sick
+ * requests  28-byte records: id, employee id, start and end epoch day,
+ *           reason, status u8, type u8, flags u8, padding u8, days charged
+ * history   18-byte records: request id, from u8 (0xFF for created),
+ *           to u8, epoch millis, changed by
+ * </pre>
+ * String references are indexes into the string table. The file is
+ * replaced through {@link AtomicFileWriter}, so it ends with a checksum
+ * footer after the records.
+ *
+ * Files written by Java serialization, the original format, can still be
+ * read. Only the employee and leave request classes are accepted from them,
+ * and the objects are rebuilt through the normal constructors.
+ */
+public class BinarySnapshot {
+    private static final int MAGIC = 0x4C545342;
+    private static final short VERSION = 3;
+    private static final int EMPLOYEE_RECORD_SIZE = 20;
+    private static final int REQUEST_RECORD_SIZE = 28;
+    private static final int HISTORY_RECORD_SIZE = 18;
+    private static final byte CREATED = -1;
+    private static final int FLAG_MEDICAL_CERTIFICATE = 1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+    private static final ObjectInputFilter SERIALIZED_CLASSES = ObjectInputFilter.Config.createFilter(
+            "maxdepth=16;java.util.ArrayList;java.lang.Object;java.lang.Enum;java.time.Ser;"
+                    + "Employee;LeaveRequest;LeaveRequest$Status;AnnualLeaveRequest;SickLeaveRequest;"
+                    + "MaternityLeaveRequest;PaternityLeaveRequest;UnpaidLeaveRequest;!*");
+
+    private final List<Employee> employees;
+    private final List<LeaveRequest> requests;
+    private final StatusHistoryLog statusHistory;
+    private final int nextRequestId;
+
+    private BinarySnapshot(List<Employee> employees, List<LeaveRequest> requests,
+            StatusHistoryLog statusHistory, int nextRequestId) {
+        this.employees = employees;
+        this.requests = requests;
+        this.statusHistory = statusHistory;
+        this.nextRequestId = nextRequestId;
+    }
+
+    public List<Employee> getEmployees() {
+        return employees;
+    }
+
+    public List<LeaveRequest> getRequests() {
+        return requests;
+    }
+
+    // In-memory log shared by the requests read
+    public StatusHistoryLog getStatusHistory() {
+        return statusHistory;
+    }
+
+    public int getNextRequestId() {
+        return nextRequestId;
+    }
+
+    // Assigns each distinct string a stable index in first-seen order
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int indexOf(String value) {
+            String key = value == null ? "" : value;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = values.size();
+                indexes.put(key, index);
+                values.add(key);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Writes a snapshot and returns the number of bytes written. Every
+     * change in {@code statusHistory} is included.
+     */
+    public static long write(Path path, Collection<Employee> employees,
+            Collection<LeaveRequest> requests, StatusHistoryLog statusHistory,
+            int nextRequestId) throws IOException {
+        StringTable strings = new StringTable();
+        List<Employee> employeeList = new ArrayList<>(employees);
+        List<LeaveRequest> requestList = new ArrayList<>(requests);
+        List<LeaveRequest.StatusChange> history = new ArrayList<>(statusHistory.size());
+        statusHistory.forEach(history::add);
+
+        // Intern every string first so the table can precede the records
+        for (Employee emp : employeeList) {
+            strings.indexOf(emp.getName());
+            strings.indexOf(emp.getDepartment());
+        }
+        for (LeaveRequest req : requestList) {
+            strings.indexOf(req.getReason());
+        }
+        for (LeaveRequest.StatusChange change : history) {
+            strings.indexOf(change.getChangedBy());
+        }
+
+        AtomicFileWriter.writeBinary(path, channel -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                    .putInt(nextRequestId)
+                    .putInt(strings.values.size())
+                    .putInt(employeeList.size())
+                    .putInt(requestList.size())
+                    .putInt(history.size());
+
+            for (String value : strings.values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > 0xFFFF) {
+                    throw new IOException("String too long for snapshot: " + bytes.length + " bytes");
+                }
+                ensureRemaining(channel, buffer, 2 + bytes.length);
+                buffer.putShort((short) bytes.length).put(bytes);
+            }
+
+            for (Employee emp : employeeList) {
+                ensureRemaining(channel, buffer, EMPLOYEE_RECORD_SIZE);
+                buffer.putInt(emp.getEmployeeId())
+                        .putInt(strings.indexOf(emp.getName()))
+                        .putInt(strings.indexOf(emp.getDepartment()))
+                        .putInt(emp.getAnnualLeaveBalance())
+                        .putInt(emp.getSickLeaveBalance());
+            }
+
+            for (LeaveRequest req : requestList) {
+                boolean hasCert = req instanceof SickLeaveRequest
+                        && ((SickLeaveRequest) req).hasMedicalCertificate();
+                ensureRemaining(channel, buffer, REQUEST_RECORD_SIZE);
+                buffer.putInt(req.getRequestId())
+                        .putInt(req.getEmployee().getEmployeeId())
+                        .putInt((int) req.getStartDate().toEpochDay())
+                        .putInt((int) req.getEndDate().toEpochDay())
+                        .putInt(strings.indexOf(req.getReason()))
+                        .put((byte) req.getStatus().ordinal())
+                        .put((byte) req.getLeaveType().ordinal())
+                        .put((byte) (hasCert ? FLAG_MEDICAL_CERTIFICATE : 0))
+                        .put((byte) 0)
+                        .putInt(req.getDaysCharged());
+            }
+
+            for (LeaveRequest.StatusChange change : history) {
+                ensureRemaining(channel, buffer, HISTORY_RECORD_SIZE);
+                buffer.putInt(change.getRequestId())
+                        .put(change.getFrom() == null ? CREATED : (byte) change.getFrom().ordinal())
+                        .put((byte) change.getTo().ordinal())
+                        .putLong(change.getTimestamp().toEpochMilli())
+                        .putInt(strings.indexOf(change.getChangedBy()));
+            }
+
+            flush(channel, buffer);
+        });
+        return Files.size(path);
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads a snapshot. Requests whose employee is missing are skipped.
+     */
+    public static BinarySnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() >= 2 && (buffer.getShort(0) & 0xFFFF) == SERIALIZATION_MAGIC) {
+                return readSerialized(path);
+            }
+            if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a leave tracker snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            buffer.getShort();
+            int nextRequestId = buffer.getInt();
+            int stringCount = buffer.getInt();
+            int employeeCount = buffer.getInt();
+            int requestCount = buffer.getInt();
+            int historyCount = buffer.getInt();
+
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                strings[i] = bytes.length == 0 ? "" : new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            List<Employee> employees = new ArrayList<>(employeeCount);
+            Map<Integer, Employee> employeesById = new HashMap<>(employeeCount * 2);
+            for (int i = 0; i < employeeCount; i++) {
+                Employee emp = new Employee(buffer.getInt(), strings[buffer.getInt()],
+                        strings[buffer.getInt()], buffer.getInt(), buffer.getInt());
+                employees.add(emp);
+                employeesById.put(emp.getEmployeeId(), emp);
+            }
+
+            StatusHistoryLog statusHistory = new StatusHistoryLog();
+            LeaveRequest.Status[] statuses = LeaveRequest.Status.values();
+            LeaveRequest.LeaveType[] types = LeaveRequest.LeaveType.values();
+            List<LeaveRequest> requests = new ArrayList<>(requestCount);
+            Map<Integer, LeaveRequest> requestsById = new HashMap<>(requestCount * 2);
+            for (int i = 0; i < requestCount; i++) {
+                int requestId = buffer.getInt();
+                Employee emp = employeesById.get(buffer.getInt());
+                LocalDate start = LocalDate.ofEpochDay(buffer.getInt());
+                LocalDate end = LocalDate.ofEpochDay(buffer.getInt());
+                String reason = strings[buffer.getInt()];
+                LeaveRequest.Status status = statuses[buffer.get()];
+                LeaveRequest.LeaveType type = types[buffer.get()];
+                boolean hasCert = (buffer.get() & FLAG_MEDICAL_CERTIFICATE) != 0;
+                buffer.get();
+                int daysCharged = buffer.getInt();
+
+                if (emp == null)
+                    continue;
+                LeaveRequest request = LeaveRequest.create(requestId, emp, start, end, reason, type, hasCert);
+                request.status = status;
+                request.setDaysCharged(daysCharged);
+                request.setHistoryLog(statusHistory);
+                requests.add(request);
+                requestsById.put(requestId, request);
+            }
+
+            for (int i = 0; i < historyCount; i++) {
+                int requestId = buffer.getInt();
+                byte fromOrdinal = buffer.get();
+                LeaveRequest.Status from = fromOrdinal == CREATED ? null : statuses[fromOrdinal];
+                LeaveRequest.Status to = statuses[buffer.get()];
+                long timestamp = buffer.getLong();
+                String by = strings[buffer.getInt()];
+                if (requestsById.containsKey(requestId)) {
+                    statusHistory.append(requestId, from, to, timestamp, by);
+                }
+            }
+
+            return new BinarySnapshot(employees, requests, statusHistory, nextRequestId);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupted snapshot file", e);
+        }
+    }
+
+    /**
+     * Reads a file written by Java serialization: the employee list, the
+     * request list and the next request ID. Only the plain fields are taken
+     * over; the status history was never written successfully in this
+     * format, so it starts empty.
+     */
+    private static BinarySnapshot readSerialized(Path path) throws IOException {
+        List<?> savedEmployees;
+        List<?> savedRequests;
+        int nextRequestId;
+        try (InputStream in = Files.newInputStream(path);
+                ObjectInputStream ois = new ObjectInputStream(in)) {
+            ois.setObjectInputFilter(SERIALIZED_CLASSES);
+            Object empData = ois.readObject();
+            Object reqData = ois.readObject();
+            if (!(empData instanceof List) || !(reqData instanceof List)) {
+                throw new IOException("Invalid data format in serialized snapshot");
+            }
+            savedEmployees = (List<?>) empData;
+            savedRequests = (List<?>) reqData;
+            nextRequestId = ois.readInt();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid data format in serialized snapshot", e);
+        }
+
+        List<Employee> employees = new ArrayList<>(savedEmployees.size());
+        Map<Integer, Employee> employeesById = new HashMap<>(savedEmployees.size() * 2);
+        for (Object saved : savedEmployees) {
+            if (!(saved instanceof Employee)) {
+                throw new IOException("Invalid data format in serialized snapshot");
+            }
+            Employee old = (Employee) saved;
+            Employee emp = new Employee(old.getEmployeeId(), old.getName(), old.getDepartment(),
+                    old.getAnnualLeaveBalance(), old.getSickLeaveBalance());
+            employees.add(emp);
+            employeesById.put(emp.getEmployeeId(), emp);
+        }
+
+        StatusHistoryLog statusHistory = new StatusHistoryLog();
+        List<LeaveRequest> requests = new ArrayList<>(savedRequests.size());
+        for (Object saved : savedRequests) {
+            if (!(saved instanceof LeaveRequest)) {
+                throw new IOException("Invalid data format in serialized snapshot");
+            }
+            LeaveRequest old = (LeaveRequest) saved;
+            Employee emp = old.getEmployee() == null ? null : employeesById.get(old.getEmployee().getEmployeeId());
+            if (emp == null || old.getStatus() == null)
+                continue;
+            boolean hasCert = old instanceof SickLeaveRequest && ((SickLeaveRequest) old).hasMedicalCertificate();
+            LeaveRequest request = LeaveRequest.create(old.getRequestId(), emp, old.getStartDate(),
+                    old.getEndDate(), old.getReason(), old.getLeaveType(), hasCert);
+            request.status = old.getStatus();
+            request.setDaysCharged(-1);
+            request.setHistoryLog(statusHistory);
+            requests.add(request);
+        }
+        return new BinarySnapshot(employees, requests, statusHistory, nextRequestId);
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Numbers the changes that {@link LeaveSnapshot} readers can see.
+ *
+ * A writer changes an employee or request under its lock stripe as before
+ * and then commits: under this sequencer's monitor, it takes the next
+ * sequence number and links in the new versions, which is a few pointer
+ * writes. A snapshot only reads the last committed number and walks
+ * version chains, so readers take no lock and neither wait for nor hold up
+ * a writer. Versions that no open snapshot can see any more are unlinked
+ * as newer ones are committed.
+ */
+public class CommitSequencer {
+    interface Commit {
+        // Links in the new versions; older ones up to oldestVisible may be dropped
+        void install(long sequence, long oldestVisible);
+    }
+
+    private volatile long committed;
+    // Raised before versions are dropped; a snapshot opened below it retries
+    private volatile long horizon;
+    // Sequence of each open snapshot -> number of snapshots open at it
+    private final ConcurrentSkipListMap<Long, Integer> openSnapshots = new ConcurrentSkipListMap<>();
+
+    public long commit(Commit commit) {
+        synchronized (this) {
+            long sequence = committed + 1;
+            // Publishing the horizon before reading the open snapshots means a
+            // snapshot either shows up below or sees the horizon and retries
+            horizon = committed;
+            Map.Entry<Long, Integer> oldest = openSnapshots.firstEntry();
+            commit.install(sequence, oldest == null ? committed : Math.min(oldest.getKey(), committed));
+            committed = sequence;
+            return sequence;
+        }
+    }
+
+    public long getCommitted() {
+        return committed;
+    }
+
+    // Registers a reader at the newest committed sequence and returns it
+    long open() {
+        while (true) {
+            long sequence = committed;
+            openSnapshots.merge(sequence, 1, Integer::sum);
+            if (sequence >= horizon)
+                return sequence;
+            close(sequence);
+        }
+    }
+
+    void close(long sequence) {
+        openSnapshots.computeIfPresent(sequence, (s, count) -> count == 1 ? null : count - 1);
+    }
+
+    public int getOpenSnapshotCount() {
+        int count = 0;
+        for (int open : openSnapshots.values()) {
+            count += open;
+        }
+        return count;
+    }
+}
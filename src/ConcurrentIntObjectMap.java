@@ -0,0 +1,175 @@
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe counterpart of {@link IntObjectMap} for maps that are read far
+ * more often than written, such as the employees by ID.
+ *
+ * Keys live unboxed in an int array with linear probing, as in
+ * IntObjectMap. Lookups take no lock: a writer stores the key before
+ * publishing the value in the same slot, so a reader that sees the value
+ * also sees its key. Writers take the map's monitor. Growing or clearing
+ * builds a new table and publishes it in one step, and mappings are never
+ * removed one at a time, so a reader's probe never sees slots move.
+ * Null values are not allowed. Iteration is weakly consistent.
+ */
+public class ConcurrentIntObjectMap<V> {
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final class Table {
+        final int[] keys;
+        final AtomicReferenceArray<Object> values;
+        final int resizeAt;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+            resizeAt = (int) (capacity * LOAD_FACTOR);
+        }
+
+        // Slot holding key, or -1 - the empty slot where it would go
+        int slotOf(int key) {
+            int mask = keys.length - 1;
+            int slot = IntObjectMap.mix(key) & mask;
+            while (values.get(slot) != null) {
+                if (keys[slot] == key)
+                    return slot;
+                slot = (slot + 1) & mask;
+            }
+            return -1 - slot;
+        }
+    }
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    // Written under the monitor only
+    private volatile int size;
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table current = table;
+        int slot = current.slotOf(key);
+        return slot >= 0 ? (V) current.values.get(slot) : null;
+    }
+
+    public boolean containsKey(int key) {
+        return table.slotOf(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        Table current = table;
+        int slot = current.slotOf(key);
+        if (slot >= 0) {
+            return (V) current.values.getAndSet(slot, value);
+        }
+        if (size >= current.resizeAt) {
+            current = rehash(current, current.keys.length << 1);
+            slot = current.slotOf(key);
+        }
+        slot = -1 - slot;
+        current.keys[slot] = key;
+        current.values.set(slot, value);
+        size++;
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    // The keys present when each slot was visited, in no particular order
+    public int[] keys() {
+        Table current = table;
+        int[] keys = new int[Math.min(size, current.keys.length)];
+        int count = 0;
+        for (int slot = 0; slot < current.keys.length; slot++) {
+            if (current.values.get(slot) != null) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, Math.max(4, count * 2));
+                }
+                keys[count++] = current.keys[slot];
+            }
+        }
+        return count == keys.length ? keys : Arrays.copyOf(keys, count);
+    }
+
+    // A weakly consistent view of the values, like ConcurrentHashMap.values()
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator(table);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private class ValueIterator implements Iterator<V> {
+        private final Table table;
+        private int slot = -1;
+        private Object next;
+
+        ValueIterator(Table table) {
+            this.table = table;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && ++slot < table.keys.length) {
+                next = table.values.get(slot);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            V value = (V) next;
+            advance();
+            return value;
+        }
+    }
+
+    // Copies every mapping into a larger table and publishes it; call under the monitor
+    private Table rehash(Table old, int capacity) {
+        Table grown = new Table(capacity);
+        for (int slot = 0; slot < old.keys.length; slot++) {
+            Object value = old.values.get(slot);
+            if (value != null) {
+                int target = -1 - grown.slotOf(old.keys[slot]);
+                grown.keys[target] = old.keys[slot];
+                grown.values.set(target, value);
+            }
+        }
+        table = grown;
+        return grown;
+    }
+}
@@ -0,0 +1,352 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel loader for the employees and leave requests CSV files.
+ *
+ * The file is cut into chunks on line boundaries, each chunk is memory
+ * mapped and parsed on its own fork-join task, and the per-chunk results
+ * are concatenated in file order. Numbers, dates, enums and booleans are
+ * parsed straight from the mapped bytes; only the text fields become
+ * strings.
+ */
+public class CsvLoader {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 1 << 28;
+    private static final int MAX_FIELDS = 16;
+
+    public static class EmployeeRecord {
+        public final int employeeId;
+        public final String name;
+        public final String department;
+        public final int annualLeave;
+        public final int sickLeave;
+        // Newest journal record the balances include; 0 when the file predates the column
+        public final long journalSequence;
+
+        EmployeeRecord(int employeeId, String name, String department, int annualLeave, int sickLeave,
+                long journalSequence) {
+            this.employeeId = employeeId;
+            this.name = name;
+            this.department = department;
+            this.annualLeave = annualLeave;
+            this.sickLeave = sickLeave;
+            this.journalSequence = journalSequence;
+        }
+    }
+
+    public static class RequestRecord {
+        public final int requestId;
+        public final int employeeId;
+        public final LocalDate startDate;
+        public final LocalDate endDate;
+        public final String reason;
+        public final LeaveRequest.Status status;
+        public final LeaveRequest.LeaveType type;
+        public final boolean hasMedicalCertificate;
+        // -1 when the file predates the column
+        public final int daysCharged;
+
+        RequestRecord(int requestId, int employeeId, LocalDate startDate, LocalDate endDate, String reason,
+                LeaveRequest.Status status, LeaveRequest.LeaveType type, boolean hasMedicalCertificate,
+                int daysCharged) {
+            this.requestId = requestId;
+            this.employeeId = employeeId;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.reason = reason;
+            this.status = status;
+            this.type = type;
+            this.hasMedicalCertificate = hasMedicalCertificate;
+            this.daysCharged = daysCharged;
+        }
+    }
+
+    // ID,Name,Department,AnnualLeave,SickLeave[,JournalSequence]
+    public static List<EmployeeRecord> loadEmployees(Path path) throws IOException {
+        return load(path, line -> {
+            if (line.fieldCount() != 5 && line.fieldCount() != 6)
+                return null;
+            return new EmployeeRecord(line.intField(0), line.stringField(1), line.stringField(2),
+                    line.intField(3), line.intField(4), line.fieldCount() > 5 ? line.longField(5) : 0);
+        });
+    }
+
+    // RequestID,EmployeeID,StartDate,EndDate,Reason,Status,Type,MedicalCertificate[,DaysCharged]
+    public static List<RequestRecord> loadRequests(Path path) throws IOException {
+        LeaveRequest.Status[] statuses = LeaveRequest.Status.values();
+        LeaveRequest.LeaveType[] types = LeaveRequest.LeaveType.values();
+        return load(path, line -> {
+            if (line.fieldCount() < 8)
+                return null;
+            return new RequestRecord(line.intField(0), line.intField(1),
+                    line.dateField(2), line.dateField(3), line.stringField(4),
+                    line.enumField(5, statuses), line.enumField(6, types), line.booleanField(7),
+                    line.fieldCount() > 8 ? line.intField(8) : -1);
+        });
+    }
+
+    private interface LineParser<T> {
+        // Returns null to skip a line with the wrong shape
+        T parse(Line line);
+    }
+
+    private static <T> List<T> load(Path path, LineParser<T> parser) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = nextLineStart(channel, 0, size);
+            long[] bounds = chunkBounds(channel, dataStart, size);
+
+            LongAdder malformed = new LongAdder();
+            try {
+                List<List<T>> chunks = IntStream.range(0, bounds.length - 1).parallel()
+                        .mapToObj(i -> parseChunk(channel, bounds[i], bounds[i + 1], parser, malformed))
+                        .collect(Collectors.toList());
+                int total = chunks.stream().mapToInt(List::size).sum();
+                List<T> result = new ArrayList<>(total);
+                chunks.forEach(result::addAll);
+                if (malformed.sum() > 0) {
+                    System.err.println("Skipped " + malformed.sum() + " malformed lines in " + path.getFileName());
+                }
+                return result;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // Splits [start, size) into chunks that each end just after a newline
+    private static long[] chunkBounds(FileChannel channel, long start, long size) throws IOException {
+        long length = size - start;
+        int cores = Runtime.getRuntime().availableProcessors();
+        long target = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, length / (cores * 4L) + 1));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(start);
+        long pos = start;
+        while (size - pos > target) {
+            pos = nextLineStart(channel, pos + target, size);
+            bounds.add(pos);
+        }
+        if (pos < size) {
+            bounds.add(size);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Offset just past the first newline at or after from, or size if none
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long pos = from;
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static <T> List<T> parseChunk(FileChannel channel, long start, long end, LineParser<T> parser,
+            LongAdder malformed) {
+        List<T> records = new ArrayList<>();
+        if (end <= start)
+            return records;
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            Line line = new Line(buffer);
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                if (line.reset(lineStart, lineEnd)) {
+                    try {
+                        T record = parser.parse(line);
+                        if (record != null) {
+                            records.add(record);
+                        } else {
+                            malformed.increment();
+                        }
+                    } catch (IllegalArgumentException | DateTimeException e) {
+                        // Malformed field; skip the line as the old loaders did
+                        malformed.increment();
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+
+    /**
+     * Field view over one line of the mapped chunk. Reused for every line
+     * of a chunk, so nothing is allocated per line except the results.
+     */
+    private static class Line {
+        private final ByteBuffer buffer;
+        private final int[] fieldStarts = new int[MAX_FIELDS];
+        private final int[] fieldEnds = new int[MAX_FIELDS];
+        private int fieldCount;
+        private byte[] scratch = new byte[256];
+
+        Line(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        // Splits [start, end) on commas; returns false for blank and # comment lines
+        boolean reset(int start, int end) {
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end == start || buffer.get(start) == '#')
+                return false;
+            fieldCount = 0;
+            int fieldStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || buffer.get(i) == ',') {
+                    if (fieldCount == MAX_FIELDS)
+                        return false;
+                    fieldStarts[fieldCount] = fieldStart;
+                    fieldEnds[fieldCount] = i;
+                    fieldCount++;
+                    fieldStart = i + 1;
+                }
+            }
+            return true;
+        }
+
+        int fieldCount() {
+            return fieldCount;
+        }
+
+        int intField(int index) {
+            int pos = fieldStarts[index];
+            int end = fieldEnds[index];
+            boolean negative = pos < end && buffer.get(pos) == '-';
+            if (negative) {
+                pos++;
+            }
+            if (pos == end) {
+                throw new NumberFormatException("Empty number");
+            }
+            long value = 0;
+            for (; pos < end; pos++) {
+                int digit = buffer.get(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Bad digit");
+                }
+                value = value * 10 + digit;
+                if (value > Integer.MAX_VALUE + 1L) {
+                    throw new NumberFormatException("Number out of range");
+                }
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Number out of range");
+            }
+            return (int) value;
+        }
+
+        // Non-negative only
+        long longField(int index) {
+            int pos = fieldStarts[index];
+            int end = fieldEnds[index];
+            if (pos == end || end - pos > 18) {
+                throw new NumberFormatException("Empty or too long number");
+            }
+            long value = 0;
+            for (; pos < end; pos++) {
+                int digit = buffer.get(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Bad digit");
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        // ISO yyyy-MM-dd
+        LocalDate dateField(int index) {
+            int pos = fieldStarts[index];
+            if (fieldEnds[index] - pos != 10 || buffer.get(pos + 4) != '-' || buffer.get(pos + 7) != '-') {
+                throw new IllegalArgumentException("Bad date");
+            }
+            return LocalDate.of(digits(pos, 4), digits(pos + 5, 2), digits(pos + 8, 2));
+        }
+
+        private int digits(int pos, int count) {
+            int value = 0;
+            for (int i = 0; i < count; i++) {
+                int digit = buffer.get(pos + i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IllegalArgumentException("Bad digit");
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        boolean booleanField(int index) {
+            // Mirrors Boolean.parseBoolean: only "true", ignoring case, is true
+            int pos = fieldStarts[index];
+            if (fieldEnds[index] - pos != 4)
+                return false;
+            return (buffer.get(pos) | 0x20) == 't' && (buffer.get(pos + 1) | 0x20) == 'r'
+                    && (buffer.get(pos + 2) | 0x20) == 'u' && (buffer.get(pos + 3) | 0x20) == 'e';
+        }
+
+        <E extends Enum<E>> E enumField(int index, E[] values) {
+            for (E value : values) {
+                if (matches(index, value.name())) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Unknown constant");
+        }
+
+        private boolean matches(int index, String ascii) {
+            int pos = fieldStarts[index];
+            if (fieldEnds[index] - pos != ascii.length())
+                return false;
+            for (int i = 0; i < ascii.length(); i++) {
+                if (buffer.get(pos + i) != ascii.charAt(i))
+                    return false;
+            }
+            return true;
+        }
+
+        String stringField(int index) {
+            int pos = fieldStarts[index];
+            int length = fieldEnds[index] - pos;
+            if (length > scratch.length) {
+                scratch = new byte[length];
+            }
+            buffer.get(pos, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
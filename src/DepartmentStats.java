@@ -0,0 +1,59 @@
+/**
+ * Point-in-time request counts and day totals for one department, broken
+ * down by status and leave type.
+ */
+public class DepartmentStats {
+    private final String department;
+    private final long[] counts;
+    private final long[] days;
+
+    DepartmentStats(String department, long[] counts, long[] days) {
+        this.department = department;
+        this.counts = counts;
+        this.days = days;
+    }
+
+    static int slot(LeaveRequest.Status status, LeaveRequest.LeaveType type) {
+        return status.ordinal() * LeaveRequest.LeaveType.values().length + type.ordinal();
+    }
+
+    static int slotCount() {
+        return LeaveRequest.Status.values().length * LeaveRequest.LeaveType.values().length;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    public long getCount(LeaveRequest.Status status, LeaveRequest.LeaveType type) {
+        return counts[slot(status, type)];
+    }
+
+    public long getDays(LeaveRequest.Status status, LeaveRequest.LeaveType type) {
+        return days[slot(status, type)];
+    }
+
+    public long getCount(LeaveRequest.Status status) {
+        long total = 0;
+        for (LeaveRequest.LeaveType type : LeaveRequest.LeaveType.values()) {
+            total += getCount(status, type);
+        }
+        return total;
+    }
+
+    public long getDays(LeaveRequest.Status status) {
+        long total = 0;
+        for (LeaveRequest.LeaveType type : LeaveRequest.LeaveType.values()) {
+            total += getDays(status, type);
+        }
+        return total;
+    }
+
+    public long getPendingCount() {
+        return getCount(LeaveRequest.Status.PENDING);
+    }
+
+    public long getApprovedDays() {
+        return getDays(LeaveRequest.Status.APPROVED);
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Running request counters per department x status x leave type.
+ *
+ * Counters are adjusted as requests are registered, change status or their
+ * employee moves department, so reading the stats never scans requests.
+ * Each employee's own contribution is tracked as well, which is what lets a
+ * department move shift exactly that employee's numbers across.
+ */
+public class DepartmentStatsIndex {
+    private final Map<String, Counters> departments = new ConcurrentHashMap<>();
+    private final Map<Integer, Counters> employees = new ConcurrentHashMap<>();
+
+    private static class Counters {
+        final AtomicLongArray counts = new AtomicLongArray(DepartmentStats.slotCount());
+        final AtomicLongArray days = new AtomicLongArray(DepartmentStats.slotCount());
+
+        void add(int slot, long count, long dayCount) {
+            counts.addAndGet(slot, count);
+            days.addAndGet(slot, dayCount);
+        }
+    }
+
+    // Counts a request under its current status, e.g. on load or creation
+    public void add(LeaveRequest request) {
+        Employee employee = request.getEmployee();
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employee.getEmployeeId());
+        lock.lock();
+        try {
+            int slot = DepartmentStats.slot(request.getStatus(), request.getLeaveType());
+            apply(employee, slot, 1, request.getNumberOfDays());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onStatusChange(LeaveRequest request, LeaveRequest.Status from, LeaveRequest.Status to) {
+        Employee employee = request.getEmployee();
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employee.getEmployeeId());
+        lock.lock();
+        try {
+            int days = request.getNumberOfDays();
+            apply(employee, DepartmentStats.slot(from, request.getLeaveType()), -1, -days);
+            apply(employee, DepartmentStats.slot(to, request.getLeaveType()), 1, days);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onDepartmentChange(Employee employee, String fromDepartment, String toDepartment) {
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employee.getEmployeeId());
+        lock.lock();
+        try {
+            Counters own = employees.get(employee.getEmployeeId());
+            if (own == null)
+                return;
+            Counters from = department(fromDepartment);
+            Counters to = department(toDepartment);
+            for (int slot = 0; slot < DepartmentStats.slotCount(); slot++) {
+                long count = own.counts.get(slot);
+                long days = own.days.get(slot);
+                if (count != 0 || days != 0) {
+                    from.add(slot, -count, -days);
+                    to.add(slot, count, days);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        departments.clear();
+        employees.clear();
+    }
+
+    public DepartmentStats getStats(String department) {
+        Counters counters = departments.get(key(department));
+        long[] counts = new long[DepartmentStats.slotCount()];
+        long[] days = new long[DepartmentStats.slotCount()];
+        if (counters != null) {
+            for (int slot = 0; slot < counts.length; slot++) {
+                counts[slot] = counters.counts.get(slot);
+                days[slot] = counters.days.get(slot);
+            }
+        }
+        return new DepartmentStats(department, counts, days);
+    }
+
+    public List<DepartmentStats> getAllStats() {
+        List<String> names = new ArrayList<>(departments.keySet());
+        Collections.sort(names);
+        List<DepartmentStats> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            result.add(getStats(name));
+        }
+        return result;
+    }
+
+    private void apply(Employee employee, int slot, long count, long days) {
+        employees.computeIfAbsent(employee.getEmployeeId(), id -> new Counters()).add(slot, count, days);
+        department(employee.getDepartment()).add(slot, count, days);
+    }
+
+    private Counters department(String name) {
+        return departments.computeIfAbsent(key(name), n -> new Counters());
+    }
+
+    // Employees without a department are counted under ""
+    private static String key(String department) {
+        return department == null ? "" : department;
+    }
+}
@@ -1,16 +1,25 @@
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Employee implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Decided requests kept on the employee; the full history lives in the system
+    static final int RECENT_HISTORY_SIZE = 16;
 
     private final int employeeId;
     private final String name;
-    private String department;
-    private int annualLeaveBalance;
-    private int sickLeaveBalance;
-    private final List<LeaveRequest> leaveHistory = new ArrayList<>();
+    private volatile String department;
+    private volatile int annualLeaveBalance;
+    private volatile int sickLeaveBalance;
+    // Latest-starting decided requests, ordered by start date then request ID
+    private LeaveRequest[] recentHistory = new LeaveRequest[0];
+    private transient LeaveEventListener listener;
+    private transient WorkingDayCalendar workingDayCalendar;
+    // Newest committed version, read by snapshots
+    private transient volatile LeaveSnapshot.EmployeeVersion version;
 
     public Employee(int employeeId, String name, String department,
             int annualLeaveBalance, int sickLeaveBalance) {
@@ -42,35 +51,110 @@ public class Employee implements Serializable {
         return sickLeaveBalance;
     }
 
-    public List<LeaveRequest> getLeaveHistory() {
-        return leaveHistory;
+    /**
+     * The decided requests with the latest start dates, oldest first, at
+     * most RECENT_HISTORY_SIZE of them. Use
+     * LeaveTrackingSystem.getEmployeeLeaveHistory to page through all.
+     */
+    public synchronized List<LeaveRequest> getLeaveHistory() {
+        return List.of(recentHistory);
+    }
+
+    // Calendar used to count chargeable days; every day counts unless set
+    public WorkingDayCalendar getWorkingDayCalendar() {
+        WorkingDayCalendar calendar = workingDayCalendar;
+        return calendar != null ? calendar : WorkingDayCalendar.ALL_DAYS;
+    }
+
+    public void setWorkingDayCalendar(WorkingDayCalendar calendar) {
+        this.workingDayCalendar = calendar;
+    }
+
+    boolean hasWorkingDayCalendar() {
+        return workingDayCalendar != null;
+    }
+
+    LeaveEventListener getListener() {
+        return listener;
+    }
+
+    // Set by LeaveTrackingSystem when the employee is registered with it
+    void setListener(LeaveEventListener listener) {
+        this.listener = listener;
     }
 
     // Setters
     public void setDepartment(String department) {
-        this.department = department;
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employeeId);
+        lock.lock();
+        try {
+            String previous = this.department;
+            this.department = department;
+            if (listener != null && !Objects.equals(department, previous)) {
+                listener.onDepartmentChange(this, previous, department);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    LeaveSnapshot.EmployeeVersion getVersion() {
+        return version;
+    }
+
+    // Records the current department and balances as the version at sequence
+    void commitVersion(long sequence, long oldestVisible) {
+        LeaveSnapshot.EmployeeVersion next = new LeaveSnapshot.EmployeeVersion(sequence, this, version);
+        next.trim(oldestVisible);
+        version = next;
     }
 
-    public void setAnnualLeaveBalance(int balance) {
+    public synchronized void setAnnualLeaveBalance(int balance) {
         this.annualLeaveBalance = balance;
     }
 
-    public void setSickLeaveBalance(int balance) {
+    public synchronized void setSickLeaveBalance(int balance) {
         this.sickLeaveBalance = balance;
     }
 
-    public void addLeaveRequest(LeaveRequest request) {
-        leaveHistory.add(request);
+    // Keeps the request if it is among the latest-starting ones; repeats are ignored
+    public synchronized void addLeaveRequest(LeaveRequest request) {
+        long key = LeaveHistoryIndex.key(request);
+        int index = 0;
+        while (index < recentHistory.length && LeaveHistoryIndex.key(recentHistory[index]) < key) {
+            index++;
+        }
+        if (index < recentHistory.length && recentHistory[index] == request)
+            return;
+        if (recentHistory.length == RECENT_HISTORY_SIZE) {
+            if (index == 0)
+                return;
+            // Drop the oldest to make room
+            System.arraycopy(recentHistory, 1, recentHistory, 0, index - 1);
+            recentHistory[index - 1] = request;
+        } else {
+            LeaveRequest[] grown = Arrays.copyOf(recentHistory, recentHistory.length + 1);
+            System.arraycopy(grown, index, grown, index + 1, recentHistory.length - index);
+            grown[index] = request;
+            recentHistory = grown;
+        }
     }
 
-    public void deductLeaveDays(LeaveRequest.LeaveType type, int days) {
+    // Callers checking the balance first should hold EmployeeLockStripes.lockFor(employeeId)
+    public synchronized void deductLeaveDays(LeaveRequest.LeaveType type, int days) {
         switch (type) {
             case ANNUAL -> annualLeaveBalance -= days;
             case SICK -> sickLeaveBalance -= days;
-            default -> throw new IllegalArgumentException("Unexpected value: " + type);
+            // Not drawn from a balance; their limits are policy rules
+            case MATERNITY, PATERNITY, UNPAID -> { }
         }
     }
 
+    // Returns days to the balance, e.g. when approved leave is cancelled
+    public synchronized void restoreLeaveDays(LeaveRequest.LeaveType type, int days) {
+        deductLeaveDays(type, -days);
+    }
+
     public void displayInfo() {
         System.out.printf("""
                 Employee ID: %d
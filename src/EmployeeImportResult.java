@@ -0,0 +1,55 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk employee import: how many rows were added and why the
+ * others were turned away.
+ */
+public class EmployeeImportResult {
+    private final List<Rejection> rejections = new ArrayList<>();
+    private int importedCount;
+
+    public static class Rejection {
+        private final int employeeId;
+        private final String reason;
+
+        public Rejection(int employeeId, String reason) {
+            this.employeeId = employeeId;
+            this.reason = reason;
+        }
+
+        public int getEmployeeId() {
+            return employeeId;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+
+    void addImported() {
+        importedCount++;
+    }
+
+    void addRejection(int employeeId, String reason) {
+        rejections.add(new Rejection(employeeId, reason));
+    }
+
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    public List<Rejection> getRejections() {
+        return Collections.unmodifiableList(rejections);
+    }
+
+    public int getRejectedCount() {
+        return rejections.size();
+    }
+
+    public void displaySummary() {
+        System.out.printf("Import: %d employees added, %d rejected%n", importedCount, rejections.size());
+        rejections.forEach(r -> System.out.printf("  Employee #%d rejected: %s%n", r.getEmployeeId(), r.getReason()));
+    }
+}
@@ -0,0 +1,29 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks shared by all employees, picked by employee ID.
+ *
+ * Balance check-then-deduct sequences hold the stripe for their employee,
+ * so two approvals for the same employee run one after the other while
+ * approvals for different employees usually land on different stripes and
+ * proceed in parallel.
+ */
+public final class EmployeeLockStripes {
+    private static final int STRIPE_COUNT = 64;
+    private static final ReentrantLock[] STRIPES = new ReentrantLock[STRIPE_COUNT];
+
+    static {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            STRIPES[i] = new ReentrantLock();
+        }
+    }
+
+    private EmployeeLockStripes() {
+    }
+
+    public static ReentrantLock lockFor(int employeeId) {
+        // Spread the bits so sequential IDs do not cluster on neighbouring stripes
+        int h = employeeId * 0x9E3779B9;
+        return STRIPES[(h ^ (h >>> 16)) & (STRIPE_COUNT - 1)];
+    }
+}
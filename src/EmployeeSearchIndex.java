@@ -0,0 +1,581 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Search over employee names and departments, for type-ahead lookups that
+ * would otherwise scan every employee.
+ *
+ * Names are lower-cased, stripped of accents and split into words. Entries
+ * are kept sorted by name, and each trigram of every word, padded with two
+ * leading spaces, maps to the sorted positions of the entries containing
+ * it; departments map to positions the same way. Matches rank exact, name
+ * prefix, word prefix, then substring, ties by name and ID. Exact and
+ * prefix matches are a binary-searched range of the sorted entries; word
+ * prefix and substring matches come from intersecting a few position lists
+ * in name order. Each step stops once the page is full, so a query costs
+ * about the page size, not the number of matches.
+ *
+ * Employees added since the last sort wait in a small unsorted list that
+ * every search checks in full, and are sorted in once it grows past
+ * {@link #MAX_UNSORTED}. Position lists are exact-size int arrays. Searches
+ * share a read lock; changes take the write lock.
+ */
+public class EmployeeSearchIndex {
+    static final int MAX_UNSORTED = 1024;
+
+    // Match quality, best first
+    private static final int EXACT = 0;
+    private static final int NAME_PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final IntObjectMap<Entry> byId = new IntObjectMap<>();
+    // Sorted part: entries by name and ID, and position lists into them
+    private Entry[] sorted = new Entry[0];
+    private IntObjectMap<Postings> byTrigram = new IntObjectMap<>();
+    private Map<String, Postings> byDepartment = new HashMap<>();
+    private final List<Entry> unsorted = new ArrayList<>();
+
+    private static final class Entry {
+        final Employee employee;
+        // Normalized name the ranking compares
+        final String name;
+        String department;
+        // Index into sorted, or -1 while unsorted
+        int position = -1;
+        // Replaced by a later entry with the same employee ID
+        boolean removed;
+
+        Entry(Employee employee) {
+            this.employee = employee;
+            this.name = employee.getName() == null ? "" : normalize(employee.getName());
+            this.department = employee.getDepartment();
+        }
+    }
+
+    private static final Comparator<Entry> BY_NAME = (a, b) -> {
+        int byName = a.name.compareTo(b.name);
+        return byName != 0 ? byName : Integer.compare(a.employee.getEmployeeId(), b.employee.getEmployeeId());
+    };
+
+    // Positions in ascending order
+    private static final class Postings {
+        int[] positions;
+        int size;
+
+        Postings(int capacity) {
+            positions = new int[capacity];
+        }
+
+        void add(int position) {
+            int index = size;
+            if (size > 0 && positions[size - 1] >= position) {
+                index = Arrays.binarySearch(positions, 0, size, position);
+                if (index >= 0)
+                    return;
+                index = -index - 1;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(4, size * 2));
+            }
+            System.arraycopy(positions, index, positions, index + 1, size - index);
+            positions[index] = position;
+            size++;
+        }
+
+        void remove(int position) {
+            int index = Arrays.binarySearch(positions, 0, size, position);
+            if (index >= 0) {
+                System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+                size--;
+            }
+        }
+
+        boolean contains(int position) {
+            return Arrays.binarySearch(positions, 0, size, position) >= 0;
+        }
+
+        // Index of the first position at or after from
+        int seek(int from) {
+            int index = Arrays.binarySearch(positions, 0, size, from);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    // One match on the current page
+    private static final class Hit {
+        final int tier;
+        final Entry entry;
+
+        Hit(int tier, Entry entry) {
+            this.tier = tier;
+            this.entry = entry;
+        }
+    }
+
+    private static final Comparator<Hit> RANKING = (a, b) -> compare(a.tier, a.entry, b.tier, b.entry);
+
+    private static int compare(int tier, Entry entry, int otherTier, Entry other) {
+        return tier != otherTier ? Integer.compare(tier, otherTier) : BY_NAME.compare(entry, other);
+    }
+
+    // Indexes the employee; adding another employee with the same ID replaces the first
+    public void add(Employee employee) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = byId.get(employee.getEmployeeId());
+            if (previous != null) {
+                if (previous.employee == employee)
+                    return;
+                removeFromDepartment(previous);
+                previous.removed = true;
+            }
+            Entry entry = new Entry(employee);
+            byId.put(employee.getEmployeeId(), entry);
+            unsorted.add(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onDepartmentChange(Employee employee, String fromDepartment, String toDepartment) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = byId.get(employee.getEmployeeId());
+            if (entry == null || entry.employee != employee)
+                return;
+            removeFromDepartment(entry);
+            entry.department = toDepartment;
+            if (toDepartment != null && entry.position >= 0) {
+                byDepartment.computeIfAbsent(toDepartment, department -> new Postings(4)).add(entry.position);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeFromDepartment(Entry entry) {
+        if (entry.department == null || entry.position < 0)
+            return;
+        Postings postings = byDepartment.get(entry.department);
+        if (postings != null) {
+            postings.remove(entry.position);
+            if (postings.size == 0) {
+                byDepartment.remove(entry.department);
+            }
+        }
+    }
+
+    // Sorts every pending addition in, e.g. after a bulk load
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (!unsorted.isEmpty()) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Call with the write lock held
+    private void rebuild() {
+        List<Entry> live = new ArrayList<>(sorted.length + unsorted.size());
+        for (Entry entry : sorted) {
+            if (!entry.removed) {
+                live.add(entry);
+            }
+        }
+        for (Entry entry : unsorted) {
+            if (!entry.removed) {
+                live.add(entry);
+            }
+        }
+        Entry[] entries = live.toArray(new Entry[0]);
+        Arrays.parallelSort(entries, BY_NAME);
+
+        // Count first so each list is allocated at its exact size
+        int[][] keysByPosition = new int[entries.length][];
+        IntObjectMap<int[]> counts = new IntObjectMap<>();
+        Map<String, Postings> departments = new HashMap<>();
+        for (int position = 0; position < entries.length; position++) {
+            Entry entry = entries[position];
+            entry.position = position;
+            keysByPosition[position] = trigrams(entry.name);
+            for (int key : keysByPosition[position]) {
+                int[] count = counts.get(key);
+                if (count == null) {
+                    counts.put(key, new int[] { 1 });
+                } else {
+                    count[0]++;
+                }
+            }
+            if (entry.department != null) {
+                departments.computeIfAbsent(entry.department, department -> new Postings(4)).add(position);
+            }
+        }
+        IntObjectMap<Postings> trigramPostings = new IntObjectMap<>(counts.size());
+        for (int position = 0; position < entries.length; position++) {
+            for (int key : keysByPosition[position]) {
+                Postings postings = trigramPostings.get(key);
+                if (postings == null) {
+                    postings = new Postings(counts.get(key)[0]);
+                    trigramPostings.put(key, postings);
+                }
+                postings.positions[postings.size++] = position;
+            }
+        }
+        sorted = entries;
+        byTrigram = trigramPostings;
+        byDepartment = departments;
+        unsorted.clear();
+    }
+
+    /**
+     * Up to pageSize employees whose name matches every word of query, best
+     * first, limited to department unless it is null, and starting after
+     * cursor (null for the first page). A blank query lists the department
+     * by name; a blank query without a department matches nothing.
+     */
+    public EmployeeSearchPage search(String query, String department, int pageSize, String cursor) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        String normalized = normalize(query == null ? "" : query);
+        String[] words = words(normalized);
+        if (words.length == 0 && department == null)
+            return new EmployeeSearchPage(new ArrayList<>(), null);
+
+        lock.readLock().lock();
+        try {
+            if (unsorted.size() > MAX_UNSORTED) {
+                // A read lock cannot be upgraded, so sort under the write lock and come back
+                lock.readLock().unlock();
+                try {
+                    compact();
+                } finally {
+                    lock.readLock().lock();
+                }
+            }
+            Hit after = cursor == null ? null : decodeCursor(cursor);
+            // One extra tells whether another page follows
+            List<Hit> hits = new ArrayList<>();
+            int limit = pageSize + 1;
+            if (words.length == 0) {
+                collect(hits, limit, NAME_PREFIX, normalized, words, after, department, new ArrayList<>());
+            } else {
+                collectPrefixRange(hits, limit, normalized, after, department);
+                collect(hits, limit, WORD_PREFIX, normalized, words, after, department, wordPrefixKeys(words));
+                collect(hits, limit, SUBSTRING, normalized, words, after, department, substringKeys(words));
+            }
+            for (Entry entry : unsorted) {
+                if (entry.removed || (department != null && !department.equals(entry.department)))
+                    continue;
+                int tier = words.length == 0 ? NAME_PREFIX : tier(entry.name, normalized, words);
+                if (tier >= 0 && (after == null || compare(tier, entry, after.tier, after.entry) > 0)) {
+                    hits.add(new Hit(tier, entry));
+                }
+            }
+
+            hits.sort(RANKING);
+            boolean more = hits.size() > pageSize;
+            List<Employee> page = new ArrayList<>(Math.min(pageSize, hits.size()));
+            for (int i = 0; i < hits.size() && i < pageSize; i++) {
+                page.add(hits.get(i).entry.employee);
+            }
+            return new EmployeeSearchPage(page, more ? encodeCursor(hits.get(pageSize - 1)) : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Adds sorted entries whose name starts with query, exact ones first, until hits holds limit
+    private void collectPrefixRange(List<Hit> hits, int limit, String query, Hit after, String department) {
+        if (after != null && after.tier > NAME_PREFIX)
+            return;
+        int from = lowerBound(query);
+        int to = lowerBound(query + Character.MAX_VALUE);
+        if (after != null && after.entry.position >= 0) {
+            // Within the range, name order is ranking order
+            from = Math.max(from, after.entry.position + 1);
+        }
+        IntPredicate add = position -> {
+            if (position >= to)
+                return false;
+            Entry entry = sorted[position];
+            int tier = entry.name.equals(query) ? EXACT : NAME_PREFIX;
+            if (!entry.removed && (after == null || compare(tier, entry, after.tier, after.entry) > 0)) {
+                hits.add(new Hit(tier, entry));
+            }
+            return hits.size() < limit;
+        };
+        if (department == null) {
+            for (int position = from; add.test(position); position++) {
+                // add does the work
+            }
+        } else {
+            Postings members = byDepartment.get(department);
+            if (members != null) {
+                forEachCommon(List.of(members), from, add);
+            }
+        }
+    }
+
+    // Adds sorted entries matching at exactly this tier, in name order, until hits holds limit
+    private void collect(List<Hit> hits, int limit, int tier, String query, String[] words, Hit after,
+            String department, List<Integer> keys) {
+        if (hits.size() >= limit || keys == null || (after != null && after.tier > tier))
+            return;
+        List<Postings> lists = new ArrayList<>(keys.size() + 1);
+        if (department != null) {
+            Postings members = byDepartment.get(department);
+            if (members == null)
+                return;
+            lists.add(members);
+        }
+        for (int key : keys) {
+            Postings postings = byTrigram.get(key);
+            if (postings == null)
+                return;
+            lists.add(postings);
+        }
+        if (lists.isEmpty())
+            return;
+        int from = after != null && after.tier == tier && after.entry.position >= 0 ? after.entry.position + 1 : 0;
+        forEachCommon(lists, from, position -> {
+            Entry entry = sorted[position];
+            if (!entry.removed && (words.length == 0 || tier(entry.name, query, words) == tier)
+                    && (after == null || compare(tier, entry, after.tier, after.entry) > 0)) {
+                hits.add(new Hit(tier, entry));
+            }
+            return hits.size() < limit;
+        });
+    }
+
+    // Passes positions from on that are in every list to action, ascending, until it returns false
+    private static void forEachCommon(List<Postings> lists, int from, IntPredicate action) {
+        List<Postings> bySize = new ArrayList<>(lists);
+        bySize.sort(Comparator.comparingInt(postings -> postings.size));
+        Postings smallest = bySize.get(0);
+        candidates:
+        for (int i = smallest.seek(from); i < smallest.size; i++) {
+            int position = smallest.positions[i];
+            for (int j = 1; j < bySize.size(); j++) {
+                if (!bySize.get(j).contains(position))
+                    continue candidates;
+            }
+            if (!action.test(position))
+                return;
+        }
+    }
+
+    // First sorted position whose name is not below name
+    private int lowerBound(String name) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].name.compareTo(name) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Everyone in the department, by name
+    public List<Employee> inDepartment(String department) {
+        lock.readLock().lock();
+        try {
+            List<Entry> members = new ArrayList<>();
+            Postings postings = byDepartment.get(department);
+            if (postings != null) {
+                for (int i = 0; i < postings.size; i++) {
+                    members.add(sorted[postings.positions[i]]);
+                }
+            }
+            for (Entry entry : unsorted) {
+                if (!entry.removed && department.equals(entry.department)) {
+                    members.add(entry);
+                }
+            }
+            members.sort(BY_NAME);
+            List<Employee> result = new ArrayList<>(members.size());
+            for (Entry member : members) {
+                result.add(member.employee);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            byId.clear();
+            sorted = new Entry[0];
+            byTrigram = new IntObjectMap<>();
+            byDepartment = new HashMap<>();
+            unsorted.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // How well name matches, or -1 if some query word is missing from it
+    private static int tier(String name, String query, String[] words) {
+        if (name.equals(query))
+            return EXACT;
+        if (name.startsWith(query))
+            return NAME_PREFIX;
+        boolean allPrefixes = true;
+        for (String word : words) {
+            if (startsWord(name, word))
+                continue;
+            // Short words only match word prefixes, as their trigrams are padded
+            if (word.length() < 3 || !name.contains(word))
+                return -1;
+            allPrefixes = false;
+        }
+        return allPrefixes ? WORD_PREFIX : SUBSTRING;
+    }
+
+    private static boolean startsWord(String name, String word) {
+        for (int at = name.indexOf(word); at >= 0; at = name.indexOf(word, at + 1)) {
+            if (at == 0 || name.charAt(at - 1) == ' ')
+                return true;
+        }
+        return false;
+    }
+
+    // Distinct padded trigrams of every word of a normalized name
+    private static int[] trigrams(String name) {
+        int[] keys = new int[name.length()];
+        int count = 0;
+        char before = ' ';
+        char last = ' ';
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == ' ') {
+                before = ' ';
+                last = ' ';
+                continue;
+            }
+            keys[count++] = trigram(before, last, c);
+            before = last;
+            last = c;
+        }
+        Arrays.sort(keys, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || keys[i] != keys[distinct - 1]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    // Trigrams of any match: the padded word start for short words, the inner ones otherwise
+    private static List<Integer> substringKeys(String[] words) {
+        List<Integer> keys = new ArrayList<>();
+        boolean anyLong = false;
+        for (String word : words) {
+            if (word.length() < 3) {
+                keys.add(prefixKey(word));
+            } else {
+                anyLong = true;
+                for (int i = 0; i + 3 <= word.length(); i++) {
+                    keys.add(trigram(word.charAt(i), word.charAt(i + 1), word.charAt(i + 2)));
+                }
+            }
+        }
+        // With only short words every match is a word prefix match
+        return anyLong ? keys : null;
+    }
+
+    // Trigrams of a match where every word starts a name word
+    private static List<Integer> wordPrefixKeys(String[] words) {
+        List<Integer> keys = new ArrayList<>();
+        for (String word : words) {
+            keys.add(prefixKey(word));
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                keys.add(trigram(word.charAt(i), word.charAt(i + 1), word.charAt(i + 2)));
+            }
+        }
+        return keys;
+    }
+
+    // The padded trigram ending at the word's first or second letter
+    private static int prefixKey(String word) {
+        return word.length() == 1 ? trigram(' ', ' ', word.charAt(0)) : trigram(' ', word.charAt(0), word.charAt(1));
+    }
+
+    // Hash of three characters; a collision only adds candidates that the name check drops
+    private static int trigram(char a, char b, char c) {
+        long packed = (long) a << 32 | (long) b << 16 | c;
+        return Long.hashCode(packed * 0x9E3779B97F4A7C15L);
+    }
+
+    private static String[] words(String normalized) {
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    // Lower case without accents, with runs of anything but letters and digits turned into one space
+    static String normalize(String text) {
+        String folded = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder normalized = new StringBuilder(folded.length());
+        boolean separated = true;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK)
+                continue;
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+                separated = false;
+            } else if (!separated) {
+                normalized.append(' ');
+                separated = true;
+            }
+        }
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') {
+            normalized.setLength(length - 1);
+        }
+        return normalized.toString();
+    }
+
+    private static String encodeCursor(Hit hit) {
+        long key = (long) hit.tier << 32 | (hit.entry.employee.getEmployeeId() & 0xFFFFFFFFL);
+        return Long.toString(key, 36);
+    }
+
+    // Call with the read lock held
+    private Hit decodeCursor(String cursor) {
+        try {
+            long key = Long.parseLong(cursor, 36);
+            int tier = (int) (key >>> 32);
+            Entry entry = byId.get((int) key);
+            if (entry != null && tier >= EXACT && tier <= SUBSTRING)
+                return new Hit(tier, entry);
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid search cursor");
+    }
+}
@@ -0,0 +1,29 @@
+import java.util.List;
+
+/**
+ * One page of employee search results, best match first. Pass
+ * {@link #getNextCursor()} back with the same query to read the following
+ * page.
+ */
+public class EmployeeSearchPage {
+    private final List<Employee> employees;
+    private final String nextCursor;
+
+    public EmployeeSearchPage(List<Employee> employees, String nextCursor) {
+        this.employees = employees;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Employee> getEmployees() {
+        return employees;
+    }
+
+    // Opaque position after the last employee, or null on the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
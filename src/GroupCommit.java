@@ -0,0 +1,54 @@
+/**
+ * Runs a save on behalf of concurrent callers, sharing runs between them.
+ *
+ * A call returns once a run that started after the call began has
+ * finished, so its changes are on disk. Callers arriving while a run is in
+ * progress wait and are all covered by the single run that follows, so N
+ * concurrent saves cost at most two runs instead of N.
+ */
+public class GroupCommit {
+    private final Runnable save;
+    private long requested;
+    private long completed;
+    private boolean running;
+
+    public GroupCommit(Runnable save) {
+        this.save = save;
+    }
+
+    public void run() {
+        long ticket;
+        synchronized (this) {
+            ticket = ++requested;
+        }
+        boolean interrupted = false;
+        while (true) {
+            long covers;
+            synchronized (this) {
+                while (running && completed < ticket) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (completed >= ticket)
+                    break;
+                running = true;
+                covers = requested;
+            }
+            try {
+                save.run();
+            } finally {
+                synchronized (this) {
+                    running = false;
+                    completed = covers;
+                    notifyAll();
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for LeaveIntakeServer. Each client sends a
+ * mix of creates, history reads and stats reads back to back for the given
+ * duration; throughput, latency percentiles and status codes are reported
+ * at the end.
+ *
+ * Without --url, an in-process server is started on synthetic data.
+ *
+ * Usage: java IntakeLoadGenerator [--url http://host:port] [--clients N]
+ *        [--seconds N] [--employees N] [--requests N] [--max-in-flight N]
+ */
+public class IntakeLoadGenerator {
+    private String url;
+    private int clients = 1000;
+    private int seconds = 30;
+    private int employees = 10_000;
+    private int requests = 100_000;
+    private int maxInFlight = 256;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        IntakeLoadGenerator generator = new IntakeLoadGenerator();
+        generator.parseArgs(args);
+        generator.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--url" -> url = value;
+                case "--clients" -> clients = Integer.parseInt(value);
+                case "--seconds" -> seconds = Integer.parseInt(value);
+                case "--employees" -> employees = Integer.parseInt(value);
+                case "--requests" -> requests = Integer.parseInt(value);
+                case "--max-in-flight" -> maxInFlight = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        LeaveIntakeServer server = null;
+        LeaveTrackingSystem system = null;
+        if (url == null) {
+            Path dataDir = Files.createTempDirectory("intake-load");
+            new SyntheticDataGenerator(42L, 10).generate(dataDir, employees, requests);
+            system = new LeaveTrackingSystem(dataDir, WorkingDayCalendar.ALL_DAYS);
+            server = new LeaveIntakeServer(system, 0, maxInFlight);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+
+        // The client keeps its own executor: with a bounded fallback pool, sharing
+        // it would leave no thread free to complete the blocked sends
+        ExecutorService executor = LeaveIntakeServer.newPerTaskExecutor(clients);
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            int clientId = c;
+            executor.execute(() -> {
+                try {
+                    runClient(client, clientId, deadline);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        executor.shutdownNow();
+
+        report();
+        if (server != null) {
+            server.stop(0);
+            system.close();
+        }
+    }
+
+    private void runClient(HttpClient client, int clientId, long deadline) {
+        Random random = new Random(clientId);
+        // Each client books its own far-future days so creates never overlap
+        LocalDate nextStart = LocalDate.of(2200, 1, 1).plusDays(clientId * 10_000L);
+        while (System.nanoTime() < deadline) {
+            int employeeId = 1 + random.nextInt(employees);
+            HttpRequest request;
+            int pick = random.nextInt(10);
+            if (pick < 4) {
+                String body = String.format("{\"employeeId\":%d,\"startDate\":\"%s\",\"endDate\":\"%s\","
+                        + "\"reason\":\"Load test\",\"type\":\"ANNUAL\"}", employeeId, nextStart, nextStart);
+                nextStart = nextStart.plusDays(2);
+                request = HttpRequest.newBuilder(URI.create(url + "/requests"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+            } else if (pick < 8) {
+                request = HttpRequest.newBuilder(URI.create(url + "/employees/" + employeeId + "/history")).build();
+            } else {
+                request = HttpRequest.newBuilder(URI.create(url + "/departments/stats")).build();
+            }
+
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                latency.record(System.nanoTime() - start);
+                statusCounts.computeIfAbsent(response.statusCode(), code -> new LongAdder()).increment();
+            } catch (Exception e) {
+                failures.increment();
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void report() {
+        long count = latency.getCount();
+        System.out.printf("%d clients for %d s against %s%n", clients, seconds, url);
+        System.out.printf("requests: %d (%.0f/s), transport failures: %d%n",
+                count, (double) count / seconds, failures.sum());
+        System.out.printf("latency us: mean %.0f, p50 %d, p99 %d, p99.9 %d, max %d%n",
+                latency.getMean() / 1000.0, latency.getPercentile(50) / 1000,
+                latency.getPercentile(99) / 1000, latency.getPercentile(99.9) / 1000, latency.getMax() / 1000);
+        new TreeMap<>(statusCounts).forEach((code, n) -> System.out.printf("HTTP %d: %d%n", code, n.sum()));
+    }
+}
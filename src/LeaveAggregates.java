@@ -0,0 +1,101 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Working days taken per employee, month and leave type, accumulated one
+ * request at a time.
+ *
+ * Requests spanning several months are split at month boundaries and
+ * clipped to the filter's period, and days are counted under each
+ * employee's working-day calendar. Memory grows with the number of
+ * distinct employee/month/type cells, not with the number of requests.
+ * Not thread-safe.
+ */
+public class LeaveAggregates {
+    private static final LeaveRequest.LeaveType[] TYPES = LeaveRequest.LeaveType.values();
+
+    private final LeaveExportFilter filter;
+    // employeeId << 32 | epochMonth << 8 | type -> {days, requests}
+    private final Map<Long, int[]> cells = new HashMap<>();
+    private final long[] daysByType = new long[TYPES.length];
+    private long requestCount;
+
+    public LeaveAggregates(LeaveExportFilter filter) {
+        this.filter = filter;
+    }
+
+    public interface CellVisitor {
+        void visit(int employeeId, YearMonth month, LeaveRequest.LeaveType type, int days, int requests);
+    }
+
+    private static long cellKey(int employeeId, long epochMonth, int type) {
+        return (long) employeeId << 32 | epochMonth << 8 | type;
+    }
+
+    private static long epochMonth(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    // Adds the request if it matches the filter; returns whether it did
+    public boolean accept(LeaveRequest request) {
+        if (!filter.matches(request))
+            return false;
+        WorkingDayCalendar calendar = request.getEmployee().getWorkingDayCalendar();
+        int employeeId = request.getEmployee().getEmployeeId();
+        int type = request.getLeaveType().ordinal();
+        LocalDate end = filter.clipEnd(request);
+
+        LocalDate monthStart = filter.clipStart(request);
+        while (!monthStart.isAfter(end)) {
+            LocalDate monthEnd = monthStart.withDayOfMonth(monthStart.lengthOfMonth());
+            if (monthEnd.isAfter(end)) {
+                monthEnd = end;
+            }
+            int days = calendar.countWorkingDays(monthStart, monthEnd);
+            int[] cell = cells.computeIfAbsent(cellKey(employeeId, epochMonth(monthStart), type), k -> new int[2]);
+            cell[0] += days;
+            cell[1]++;
+            daysByType[type] += days;
+            monthStart = monthEnd.plusDays(1);
+        }
+        requestCount++;
+        return true;
+    }
+
+    public int getDays(int employeeId, YearMonth month, LeaveRequest.LeaveType type) {
+        int[] cell = cells.get(cellKey(employeeId, month.getYear() * 12L + month.getMonthValue() - 1,
+                type.ordinal()));
+        return cell == null ? 0 : cell[0];
+    }
+
+    public long getTotalDays(LeaveRequest.LeaveType type) {
+        return daysByType[type.ordinal()];
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    // Visits every non-empty cell ordered by employee, month, then type
+    public void forEachCell(CellVisitor visitor) {
+        long[] keys = new long[cells.size()];
+        int n = 0;
+        for (long key : cells.keySet()) {
+            keys[n++] = key;
+        }
+        Arrays.sort(keys);
+        for (long key : keys) {
+            int[] cell = cells.get(key);
+            long epochMonth = (key >>> 8) & 0xFFFFFF;
+            visitor.visit((int) (key >>> 32), YearMonth.of((int) (epochMonth / 12), (int) (epochMonth % 12) + 1),
+                    TYPES[(int) (key & 0xFF)], cell[0], cell[1]);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Micro-benchmarks for the main LeaveTrackingSystem paths, run against
+ * seeded synthetic data so results can be compared between commits.
+ *
+ * Each benchmark runs warm-up iterations, then timed iterations. Set-up
+ * such as copying a fresh data directory is not timed. Results are printed
+ * as a table and can be appended to a CSV file with --csv.
+ *
+ * Usage: java LeaveBenchmark [--employees N] [--requests N] [--warmup N]
+ *        [--iterations N] [--seed N] [--csv file] [--only name]
+ */
+public class LeaveBenchmark {
+    private int employees = 10_000;
+    private int requests = 200_000;
+    private int warmupIterations = 3;
+    private int measuredIterations = 10;
+    private long seed = 42L;
+    private Path csvOutput;
+    private String only;
+
+    private Path workDir;
+    private Path templateDir;
+    private final PrintStream report = System.out;
+    private final List<String> csvLines = new ArrayList<>();
+
+    // Written by every benchmark so the JIT cannot drop the measured work
+    static volatile long sink;
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    private interface Setup {
+        // Prepares untimed state and returns the timed operation
+        Operation prepare() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LeaveBenchmark benchmark = new LeaveBenchmark();
+        benchmark.parseArgs(args);
+        benchmark.runAll();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--employees" -> employees = Integer.parseInt(value);
+                case "--requests" -> requests = Integer.parseInt(value);
+                case "--warmup" -> warmupIterations = Integer.parseInt(value);
+                case "--iterations" -> measuredIterations = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--csv" -> csvOutput = Paths.get(value);
+                case "--only" -> only = value;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    private void runAll() throws Exception {
+        workDir = Files.createTempDirectory("leave-bench");
+        templateDir = workDir.resolve("template");
+        new SyntheticDataGenerator(seed, 10).generate(templateDir, employees, requests);
+
+        report.printf("LeaveBenchmark: %d employees, %d requests, seed %d, Java %s%n",
+                employees, requests, seed, System.getProperty("java.version"));
+        report.printf("%-28s %10s %14s %14s %14s %14s%n",
+                "benchmark", "ops/iter", "mean us/op", "p50 us/op", "p99 us/op", "ops/s");
+
+        // The system reports progress on stdout; keep it out of the results
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            benchmarkLoad();
+            benchmarkCreate();
+            benchmarkProcessPending();
+            benchmarkDepartmentStats();
+            benchmarkBinarySnapshot();
+            benchmarkNumberOfDays();
+        } finally {
+            System.setOut(report);
+            deleteRecursively(workDir);
+        }
+
+        if (csvOutput != null) {
+            if (!Files.exists(csvOutput)) {
+                csvLines.add(0, "benchmark,employees,requests,ops_per_iteration,mean_us_per_op,p50_us_per_op,p99_us_per_op,ops_per_second");
+            }
+            Files.write(csvOutput, csvLines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private void benchmarkLoad() throws Exception {
+        Path dir = freshCopy();
+        measure("construct (CSV load)", 1, () -> () -> {
+            LeaveTrackingSystem system = new LeaveTrackingSystem(dir, WorkingDayCalendar.ALL_DAYS);
+            sink += system.getAllDepartmentStats().size();
+        });
+    }
+
+    private void benchmarkCreate() throws Exception {
+        int creates = 1000;
+        measure("createLeaveRequest", creates, () -> {
+            LeaveTrackingSystem system = new LeaveTrackingSystem(freshCopy(), WorkingDayCalendar.ALL_DAYS);
+            Random random = new Random(seed);
+            // Far-future, per-call distinct dates so no request overlaps another
+            LocalDate base = LocalDate.of(2100, 1, 1);
+            return () -> {
+                for (int i = 0; i < creates; i++) {
+                    Employee employee = system.getEmployee(1 + random.nextInt(employees));
+                    LocalDate start = base.plusDays(i * 3L);
+                    sink += system.createLeaveRequest(employee, start, start.plusDays(1), "Benchmark",
+                            LeaveRequest.LeaveType.ANNUAL, false).getRequestId();
+                }
+            };
+        });
+    }
+
+    private void benchmarkProcessPending() throws Exception {
+        // Every iteration starts from the same number of pending requests
+        LeaveTrackingSystem probe = new LeaveTrackingSystem(freshCopy(), WorkingDayCalendar.ALL_DAYS);
+        int pending = (int) probe.getAllDepartmentStats().stream()
+                .mapToLong(DepartmentStats::getPendingCount).sum();
+        measure("processPendingRequests", Math.max(1, pending), () -> {
+            LeaveTrackingSystem system = new LeaveTrackingSystem(freshCopy(), WorkingDayCalendar.ALL_DAYS);
+            return () -> sink += system.processPendingRequests("Benchmark").size();
+        });
+    }
+
+    private void benchmarkDepartmentStats() throws Exception {
+        LeaveTrackingSystem system = new LeaveTrackingSystem(freshCopy(), WorkingDayCalendar.ALL_DAYS);
+        measure("displayDepartmentStats", 1, () -> system::displayDepartmentStats);
+    }
+
+    private void benchmarkBinarySnapshot() throws Exception {
+        LeaveTrackingSystem system = new LeaveTrackingSystem(freshCopy(), WorkingDayCalendar.ALL_DAYS);
+        measure("saveToBinaryFile", 1, () -> () -> system.saveToBinaryFile("bench.dat"));
+        measure("loadFromBinaryFile", 1, () -> () -> system.loadFromBinaryFile("bench.dat"));
+    }
+
+    private void benchmarkNumberOfDays() throws Exception {
+        LeaveTrackingSystem system = new LeaveTrackingSystem(freshCopy(), WorkingDayCalendar.ALL_DAYS);
+        List<LeaveRequest> all = new ArrayList<>();
+        for (int id = 1; id <= employees; id++) {
+            all.addAll(system.findOverlappingRequests(id, LocalDate.MIN, LocalDate.MAX));
+        }
+        measure("getNumberOfDays", Math.max(1, all.size()), () -> () -> {
+            long total = 0;
+            for (LeaveRequest request : all) {
+                total += request.getNumberOfDays();
+            }
+            sink += total;
+        });
+    }
+
+    private void measure(String name, int opsPerIteration, Setup setup) throws Exception {
+        if (only != null && !name.startsWith(only))
+            return;
+
+        for (int i = 0; i < warmupIterations; i++) {
+            setup.prepare().run();
+        }
+        long[] nanos = new long[measuredIterations];
+        for (int i = 0; i < measuredIterations; i++) {
+            Operation operation = setup.prepare();
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(nanos);
+        double mean = Arrays.stream(nanos).average().orElse(0) / 1000.0 / opsPerIteration;
+        double p50 = nanos[nanos.length / 2] / 1000.0 / opsPerIteration;
+        double p99 = nanos[Math.min(nanos.length - 1, (int) Math.ceil(nanos.length * 0.99) - 1)]
+                / 1000.0 / opsPerIteration;
+        double opsPerSecond = mean > 0 ? 1_000_000.0 / mean : 0;
+
+        report.printf("%-28s %10d %14.3f %14.3f %14.3f %14.0f%n",
+                name, opsPerIteration, mean, p50, p99, opsPerSecond);
+        csvLines.add(String.format("%s,%d,%d,%d,%.3f,%.3f,%.3f,%.0f",
+                name, employees, requests, opsPerIteration, mean, p50, p99, opsPerSecond));
+    }
+
+    // A private copy of the generated data, so writes never leak between iterations
+    private Path freshCopy() throws IOException {
+        Path dir = Files.createTempDirectory(workDir, "run");
+        for (String file : new String[] { "employees.csv", "leave_requests.csv" }) {
+            Files.copy(templateDir.resolve(file), dir.resolve(file));
+        }
+        return dir;
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * One leave lifecycle event as delivered by {@link LeaveEventBus}.
+ *
+ * A subscriber reuses the object it hands its handler for later events, so
+ * a handler must not keep the object itself; call {@link #copy()} to hold
+ * on to one.
+ */
+public class LeaveEvent {
+    public enum Type {
+        CREATED, APPROVED, DENIED, CANCELLED,
+        // Annual or sick balance moved, e.g. on approval, cancellation or rollover
+        BALANCE_CHANGED
+    }
+
+    private Type type;
+    private int requestId;
+    private int employeeId;
+    private String department;
+    private LeaveRequest.LeaveType leaveType;
+    private LeaveRequest.Status fromStatus;
+    private LeaveRequest.Status toStatus;
+    private int annualLeaveBalance;
+    private int sickLeaveBalance;
+    private long timestampMillis;
+
+    LeaveEvent() {
+    }
+
+    // Fills this slot; request may be null for balance changes not caused by a request
+    void set(Type type, Employee employee, LeaveRequest request, LeaveRequest.Status fromStatus,
+            LeaveRequest.Status toStatus) {
+        this.type = type;
+        this.requestId = request == null ? 0 : request.getRequestId();
+        this.employeeId = employee.getEmployeeId();
+        this.department = employee.getDepartment();
+        this.leaveType = request == null ? null : request.getLeaveType();
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+        this.annualLeaveBalance = employee.getAnnualLeaveBalance();
+        this.sickLeaveBalance = employee.getSickLeaveBalance();
+        this.timestampMillis = System.currentTimeMillis();
+    }
+
+    void copyFrom(LeaveEvent other) {
+        this.type = other.type;
+        this.requestId = other.requestId;
+        this.employeeId = other.employeeId;
+        this.department = other.department;
+        this.leaveType = other.leaveType;
+        this.fromStatus = other.fromStatus;
+        this.toStatus = other.toStatus;
+        this.annualLeaveBalance = other.annualLeaveBalance;
+        this.sickLeaveBalance = other.sickLeaveBalance;
+        this.timestampMillis = other.timestampMillis;
+    }
+
+    // A detached copy that stays valid after the handler returns
+    public LeaveEvent copy() {
+        LeaveEvent copy = new LeaveEvent();
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // 0 for balance changes that no request caused
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public int getEmployeeId() {
+        return employeeId;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    // Null for balance changes that no request caused
+    public LeaveRequest.LeaveType getLeaveType() {
+        return leaveType;
+    }
+
+    // Null for CREATED and for balance changes that no request caused
+    public LeaveRequest.Status getFromStatus() {
+        return fromStatus;
+    }
+
+    // Null for balance changes that no request caused
+    public LeaveRequest.Status getToStatus() {
+        return toStatus;
+    }
+
+    // Employee's balances right after the change
+    public int getAnnualLeaveBalance() {
+        return annualLeaveBalance;
+    }
+
+    public int getSickLeaveBalance() {
+        return sickLeaveBalance;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    @Override
+    public String toString() {
+        return type + " request " + requestId + " employee " + employeeId
+                + " balances " + annualLeaveBalance + "/" + sickLeaveBalance;
+    }
+}
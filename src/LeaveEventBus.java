@@ -0,0 +1,376 @@
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stream of leave lifecycle events with independent subscribers.
+ *
+ * Events are written into a preallocated ring of {@link LeaveEvent} slots.
+ * A publisher claims the next sequence with one atomic increment, fills the
+ * slot and marks it published; it never waits for a subscriber, and with no
+ * subscribers it returns at once. Each subscriber runs on its own thread,
+ * reads the published events after its own position in order, and hands
+ * copies of them to its handler in batches.
+ *
+ * Publishers overwrite the ring regardless of readers. A subscriber that
+ * falls a whole ring behind skips the events overwritten before it read
+ * them and counts them as dropped, so a slow handler loses events for its
+ * own subscriber only and never holds up the thread making the change.
+ * Each subscriber's lag is published as a gauge; drops are counted per
+ * subscriber and in total.
+ */
+public class LeaveEventBus {
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    // Idle subscribers spin, then yield, then sleep up to this long between polls
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 10;
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // Slot state while a publisher fills it
+    private static final int WRITING = Integer.MIN_VALUE;
+
+    public interface Handler {
+        /**
+         * Called for each event in sequence order; endOfBatch is true for the
+         * last event currently available, e.g. to flush a sink.
+         */
+        void onEvent(LeaveEvent event, long sequence, boolean endOfBatch);
+    }
+
+    private final LeaveEvent[] ring;
+    private final int mask;
+    private final int shift;
+    // Round (sequence / capacity) of the event last published into each slot, or WRITING
+    private final AtomicIntegerArray published;
+    // Next sequence to claim
+    private final AtomicLong next = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LeaveMetrics metrics;
+
+    public LeaveEventBus(int capacity, LeaveMetrics metrics) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.ring = new LeaveEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new LeaveEvent();
+        }
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfTrailingZeros(capacity);
+        this.published = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.metrics = metrics;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public void publish(LeaveEvent.Type type, Employee employee, LeaveRequest request,
+            LeaveRequest.Status fromStatus, LeaveRequest.Status toStatus) {
+        if (subscriptions.isEmpty())
+            return;
+        long sequence = next.getAndIncrement();
+        int index = (int) sequence & mask;
+        int round = (int) (sequence >>> shift);
+        if (!acquireSlot(index, round))
+            return;
+        ring[index].set(type, employee, request, fromStatus, toStatus);
+        published.set(index, round);
+    }
+
+    // Publishes the events captured in batch, e.g. while locks were held, and closes it
+    public void publish(Batch batch) {
+        int size = batch.size;
+        batch.size = 0;
+        batch.open = false;
+        if (subscriptions.isEmpty())
+            return;
+        for (int i = 0; i < size; i++) {
+            long sequence = next.getAndIncrement();
+            int index = (int) sequence & mask;
+            int round = (int) (sequence >>> shift);
+            if (!acquireSlot(index, round))
+                continue;
+            ring[index].copyFrom(batch.events[i]);
+            published.set(index, round);
+        }
+    }
+
+    /**
+     * Events captured now to be published together later. The event
+     * objects are kept and refilled by later batches, so a batch reused by
+     * one thread stops allocating once it has grown to its largest size.
+     */
+    public static class Batch {
+        private LeaveEvent[] events = new LeaveEvent[8];
+        private int size;
+        // Between open() and publish(); nested callers leave capturing to the outermost
+        private boolean open;
+
+        public boolean isOpen() {
+            return open;
+        }
+
+        public void open() {
+            open = true;
+        }
+
+        void add(LeaveEvent.Type type, Employee employee, LeaveRequest request,
+                LeaveRequest.Status fromStatus, LeaveRequest.Status toStatus) {
+            if (size == events.length) {
+                events = Arrays.copyOf(events, size * 2);
+            }
+            if (events[size] == null) {
+                events[size] = new LeaveEvent();
+            }
+            events[size++].set(type, employee, request, fromStatus, toStatus);
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Marks the slot as being written. Returns false if a later round has
+     * already taken it, which only happens to a publisher stalled for a
+     * whole ring; subscribers then count the event as dropped.
+     */
+    private boolean acquireSlot(int index, int round) {
+        while (true) {
+            int current = published.get(index);
+            if (current == WRITING) {
+                Thread.onSpinWait();
+            } else if (current >= round) {
+                return false;
+            } else if (published.compareAndSet(index, current, WRITING)) {
+                return true;
+            }
+        }
+    }
+
+    // Lowest next-to-read position over the subscribers, or sequence if there are none
+    private long minimumPosition(long sequence) {
+        long minimum = sequence;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.position.get());
+        }
+        return minimum;
+    }
+
+    private static final int PUBLISHED = 0;
+    private static final int NOT_PUBLISHED = 1;
+    private static final int OVERWRITTEN = 2;
+
+    /**
+     * Copies the event at sequence into target. The slot's round is checked
+     * again after the copy, so an event overwritten mid-copy is reported as
+     * OVERWRITTEN rather than handed out torn.
+     */
+    private int read(long sequence, LeaveEvent target) {
+        int index = (int) sequence & mask;
+        int round = (int) (sequence >>> shift);
+        int state = published.get(index);
+        if (state == round) {
+            target.copyFrom(ring[index]);
+            VarHandle.loadLoadFence();
+            return published.get(index) == round ? PUBLISHED : OVERWRITTEN;
+        }
+        // A later round still being written shows up as a lap on the next pass
+        return state != WRITING && state > round ? OVERWRITTEN : NOT_PUBLISHED;
+    }
+
+    // Events published so far
+    public long getPublishedCount() {
+        return next.get();
+    }
+
+    // Events the slowest subscriber has yet to read
+    public long getBacklog() {
+        long claimed = next.get();
+        return claimed - minimumPosition(claimed);
+    }
+
+    // Events subscribers lost to being a whole ring behind, over all subscribers so far
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Starts delivering events published from now on to handler, on a new
+     * daemon thread. The name labels the thread and the lag gauge.
+     */
+    public Subscription subscribe(String name, Handler handler) {
+        Subscription subscription = new Subscription(name, handler);
+        subscription.position.set(next.get());
+        subscriptions.add(subscription);
+        metrics.registerGauge("eventLag." + name, subscription::getLag);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    // Stops every subscriber after it has handled the events already published
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    public class Subscription implements AutoCloseable {
+        private final String name;
+        private final Handler handler;
+        // Next sequence this subscriber reads; everything before it is done
+        private final AtomicLong position = new AtomicLong();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder lost = new LongAdder();
+        private final Thread thread;
+        private volatile boolean stopping;
+        // Copies of slots; the handler sees these, never the ring itself
+        private LeaveEvent current = new LeaveEvent();
+        private LeaveEvent following = new LeaveEvent();
+
+        Subscription(String name, Handler handler) {
+            this.name = name;
+            this.handler = handler;
+            this.thread = new Thread(this::run, "leave-events-" + name);
+            thread.setDaemon(true);
+        }
+
+        private void run() {
+            long nextSequence = position.get();
+            int idle = 0;
+            while (true) {
+                long claimed = next.get();
+                if (claimed - nextSequence > ring.length) {
+                    // Lapped: everything before this may already be overwritten
+                    long resume = claimed - ring.length;
+                    drop(resume - nextSequence);
+                    nextSequence = resume;
+                    position.set(nextSequence);
+                }
+                long handled = handleBatch(nextSequence, claimed);
+                if (handled == nextSequence) {
+                    if (stopping)
+                        return;
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+                nextSequence = handled;
+                position.set(nextSequence);
+            }
+        }
+
+        /**
+         * Hands the events readable from first on to the handler, one behind
+         * the read so the last can be flagged as the end of the batch.
+         * Returns the sequence to read next.
+         */
+        private long handleBatch(long first, long claimed) {
+            long start = System.nanoTime();
+            long held = -1;
+            long sequence = first;
+            for (; sequence < claimed; sequence++) {
+                int state = read(sequence, following);
+                if (state == NOT_PUBLISHED)
+                    break;
+                if (state == OVERWRITTEN) {
+                    drop(1);
+                    continue;
+                }
+                if (held >= 0) {
+                    handle(current, held, false);
+                }
+                LeaveEvent read = following;
+                following = current;
+                current = read;
+                held = sequence;
+            }
+            if (held >= 0) {
+                handle(current, held, true);
+                metrics.recordSince(LeaveMetrics.Operation.EVENT_BATCH, start);
+            }
+            return sequence;
+        }
+
+        private void handle(LeaveEvent event, long sequence, boolean endOfBatch) {
+            try {
+                handler.onEvent(event, sequence, endOfBatch);
+            } catch (RuntimeException e) {
+                errors.increment();
+                metrics.recordError(LeaveMetrics.Operation.EVENT_BATCH);
+                System.err.println("Error in event subscriber " + name + ": " + e.getMessage());
+            }
+        }
+
+        private void drop(long count) {
+            lost.add(count);
+            dropped.add(count);
+        }
+
+        // Backs off from spinning to sleeping while nothing is published
+        private int idle(int tries) {
+            if (tries < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(MAX_IDLE_NANOS, 1000L << Math.min(10, tries - SPIN_TRIES - YIELD_TRIES)));
+            }
+            return tries + 1;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Published events this subscriber has not handled yet
+        public long getLag() {
+            return Math.max(0, next.get() - position.get());
+        }
+
+        // Events overwritten before this subscriber read them
+        public long getDroppedCount() {
+            return lost.sum();
+        }
+
+        // Events the handler threw on; they are skipped, not retried
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        /**
+         * Handles what has been published so far, then stops and releases
+         * the subscriber's hold on the ring. Waits for the thread unless
+         * called from the handler itself.
+         */
+        @Override
+        public void close() {
+            stopping = true;
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            subscriptions.remove(this);
+            metrics.unregisterGauge("eventLag." + name);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Callback for changes the system keeps derived indexes in sync with.
+ * Implementations should be quick; they run on the thread that made the
+ * change, inside the employee's lock stripe.
+ */
+public interface LeaveEventListener {
+    default void onStatusChange(LeaveRequest request, LeaveRequest.Status from, LeaveRequest.Status to) {
+    }
+
+    default void onDepartmentChange(Employee employee, String fromDepartment, String toDepartment) {
+    }
+}
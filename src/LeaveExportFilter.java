@@ -0,0 +1,86 @@
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Selects the requests an export or report covers. Requests match when they
+ * overlap the date range and have one of the listed statuses and types in
+ * the given department; every criterion left unset matches everything.
+ * Instances are immutable; each {@code with} method returns a new filter.
+ */
+public class LeaveExportFilter {
+    private static final LeaveExportFilter ALL = new LeaveExportFilter(null, null, null,
+            EnumSet.allOf(LeaveRequest.Status.class), EnumSet.allOf(LeaveRequest.LeaveType.class));
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final String department;
+    private final Set<LeaveRequest.Status> statuses;
+    private final Set<LeaveRequest.LeaveType> types;
+    private final long fromDay;
+    private final long toDay;
+
+    private LeaveExportFilter(LocalDate from, LocalDate to, String department,
+            Set<LeaveRequest.Status> statuses, Set<LeaveRequest.LeaveType> types) {
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("Period ends before it starts");
+        }
+        this.from = from;
+        this.to = to;
+        this.department = department;
+        this.statuses = statuses;
+        this.types = types;
+        this.fromDay = from == null ? Long.MIN_VALUE : from.toEpochDay();
+        this.toDay = to == null ? Long.MAX_VALUE : to.toEpochDay();
+    }
+
+    public static LeaveExportFilter all() {
+        return ALL;
+    }
+
+    // Requests overlapping [from, to], both inclusive; null leaves that end open
+    public LeaveExportFilter withPeriod(LocalDate from, LocalDate to) {
+        return new LeaveExportFilter(from, to, department, statuses, types);
+    }
+
+    public LeaveExportFilter withDepartment(String department) {
+        return new LeaveExportFilter(from, to, department, statuses, types);
+    }
+
+    public LeaveExportFilter withStatuses(LeaveRequest.Status first, LeaveRequest.Status... rest) {
+        return new LeaveExportFilter(from, to, department, EnumSet.of(first, rest), types);
+    }
+
+    public LeaveExportFilter withTypes(LeaveRequest.LeaveType first, LeaveRequest.LeaveType... rest) {
+        return new LeaveExportFilter(from, to, department, statuses, EnumSet.of(first, rest));
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    public boolean matches(LeaveRequest request) {
+        return statuses.contains(request.getStatus())
+                && types.contains(request.getLeaveType())
+                && request.getEndDate().toEpochDay() >= fromDay
+                && request.getStartDate().toEpochDay() <= toDay
+                && (department == null || department.equals(request.getEmployee().getDepartment()));
+    }
+
+    // First and last day of the request that fall inside the period
+    LocalDate clipStart(LeaveRequest request) {
+        return from != null && request.getStartDate().isBefore(from) ? from : request.getStartDate();
+    }
+
+    LocalDate clipEnd(LeaveRequest request) {
+        return to != null && request.getEndDate().isAfter(to) ? to : request.getEndDate();
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams leave requests to a file for payroll and analytics, one request
+ * at a time, through a fixed direct buffer and a FileChannel. Memory stays
+ * constant however many rows are written, and an optional LeaveAggregates
+ * is filled in the same pass.
+ *
+ * <p>CSV output has one row per request under {@link #CSV_HEADER}; the
+ * period columns count working days inside the filter's period.
+ *
+ * <p>Columnar output is a sequence of blocks of up to {@link #BLOCK_ROWS}
+ * rows, all big-endian:
+ * <pre>
+ * header  int magic "LTEX", short version, short 0
+ * block   int rowCount (0 ends the file), int dictionarySize,
+ *         dictionarySize x (short length, UTF-8 department name),
+ *         int[rowCount] requestId, employeeId, department (dictionary index),
+ *         startDay, endDay (epoch days), workingDays, periodWorkingDays,
+ *         byte[rowCount] status, leaveType (enum ordinals)
+ * </pre>
+ */
+public class LeaveExporter {
+    public enum Format { CSV, COLUMNAR }
+
+    public static final String CSV_HEADER =
+            "requestId,employeeId,department,leaveType,status,startDate,endDate,workingDays,periodWorkingDays";
+    public static final String AGGREGATES_HEADER = "employeeId,month,leaveType,days,requests";
+
+    static final int MAGIC = 0x4C544558; // "LTEX"
+    static final short VERSION = 1;
+    static final int BLOCK_ROWS = 65_536;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private LeaveExporter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Writes every request matching the filter and returns the number of
+     * rows written. Matching requests are also added to aggregates unless it
+     * is null.
+     */
+    public static long export(Iterable<LeaveRequest> requests, LeaveExportFilter filter, Path path,
+            Format format, LeaveAggregates aggregates) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            LeaveExporter exporter = new LeaveExporter(channel);
+            RowSink sink = format == Format.CSV ? exporter.new CsvSink() : exporter.new ColumnarSink();
+            long rows = 0;
+            for (LeaveRequest request : requests) {
+                if (!filter.matches(request))
+                    continue;
+                sink.write(request, filter);
+                if (aggregates != null) {
+                    aggregates.accept(request);
+                }
+                rows++;
+            }
+            sink.finish();
+            exporter.flush();
+            return rows;
+        }
+    }
+
+    // Writes the aggregates as CSV under AGGREGATES_HEADER
+    public static void writeAggregates(LeaveAggregates aggregates, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            LeaveExporter exporter = new LeaveExporter(channel);
+            exporter.putAscii(AGGREGATES_HEADER);
+            exporter.putByte('\n');
+            IOException[] failure = new IOException[1];
+            aggregates.forEachCell((employeeId, month, type, days, requests) -> {
+                if (failure[0] != null)
+                    return;
+                try {
+                    exporter.putNumber(employeeId);
+                    exporter.putByte(',');
+                    exporter.putAscii(month.toString());
+                    exporter.putByte(',');
+                    exporter.putAscii(type.name());
+                    exporter.putByte(',');
+                    exporter.putNumber(days);
+                    exporter.putByte(',');
+                    exporter.putNumber(requests);
+                    exporter.putByte('\n');
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null)
+                throw failure[0];
+            exporter.flush();
+        }
+    }
+
+    private interface RowSink {
+        void write(LeaveRequest request, LeaveExportFilter filter) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static int periodWorkingDays(LeaveRequest request, LeaveExportFilter filter) {
+        return request.getEmployee().getWorkingDayCalendar()
+                .countWorkingDays(filter.clipStart(request), filter.clipEnd(request));
+    }
+
+    private class CsvSink implements RowSink {
+        // Department names repeat across millions of rows, so encode each once
+        private final Map<String, byte[]> encoded = new HashMap<>();
+
+        CsvSink() throws IOException {
+            putAscii(CSV_HEADER);
+            putByte('\n');
+        }
+
+        @Override
+        public void write(LeaveRequest request, LeaveExportFilter filter) throws IOException {
+            String department = request.getEmployee().getDepartment();
+            byte[] departmentBytes = encoded.computeIfAbsent(department == null ? "" : department,
+                    d -> d.getBytes(StandardCharsets.UTF_8));
+            // Room for the whole row, so the separators below can be put directly
+            ensureRemaining(departmentBytes.length + 128);
+            putNumber(request.getRequestId());
+            buffer.put((byte) ',');
+            putNumber(request.getEmployee().getEmployeeId());
+            buffer.put((byte) ',');
+            buffer.put(departmentBytes);
+            buffer.put((byte) ',');
+            putAscii(request.getLeaveType().name());
+            buffer.put((byte) ',');
+            putAscii(request.getStatus().name());
+            buffer.put((byte) ',');
+            putDate(request.getStartDate());
+            buffer.put((byte) ',');
+            putDate(request.getEndDate());
+            buffer.put((byte) ',');
+            putNumber(request.getWorkingDays());
+            buffer.put((byte) ',');
+            putNumber(periodWorkingDays(request, filter));
+            buffer.put((byte) '\n');
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    private class ColumnarSink implements RowSink {
+        private final int[] requestIds = new int[BLOCK_ROWS];
+        private final int[] employeeIds = new int[BLOCK_ROWS];
+        private final int[] departments = new int[BLOCK_ROWS];
+        private final int[] startDays = new int[BLOCK_ROWS];
+        private final int[] endDays = new int[BLOCK_ROWS];
+        private final int[] workingDays = new int[BLOCK_ROWS];
+        private final int[] periodDays = new int[BLOCK_ROWS];
+        private final byte[] statuses = new byte[BLOCK_ROWS];
+        private final byte[] types = new byte[BLOCK_ROWS];
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> dictionaryValues = new ArrayList<>();
+        private int rows;
+
+        ColumnarSink() throws IOException {
+            ensureRemaining(8);
+            buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+        }
+
+        @Override
+        public void write(LeaveRequest request, LeaveExportFilter filter) throws IOException {
+            String department = request.getEmployee().getDepartment();
+            requestIds[rows] = request.getRequestId();
+            employeeIds[rows] = request.getEmployee().getEmployeeId();
+            departments[rows] = dictionary.computeIfAbsent(department == null ? "" : department, d -> {
+                dictionaryValues.add(d);
+                return dictionaryValues.size() - 1;
+            });
+            startDays[rows] = (int) request.getStartDate().toEpochDay();
+            endDays[rows] = (int) request.getEndDate().toEpochDay();
+            workingDays[rows] = request.getWorkingDays();
+            periodDays[rows] = periodWorkingDays(request, filter);
+            statuses[rows] = (byte) request.getStatus().ordinal();
+            types[rows] = (byte) request.getLeaveType().ordinal();
+            if (++rows == BLOCK_ROWS) {
+                writeBlock();
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            ensureRemaining(8);
+            buffer.putInt(rows).putInt(dictionaryValues.size());
+            for (String value : dictionaryValues) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > 0xFFFF) {
+                    throw new IOException("Department name too long for export: " + bytes.length + " bytes");
+                }
+                ensureRemaining(2 + bytes.length);
+                buffer.putShort((short) bytes.length).put(bytes);
+            }
+            for (int[] column : Arrays.asList(requestIds, employeeIds, departments, startDays, endDays,
+                    workingDays, periodDays)) {
+                putInts(column, rows);
+            }
+            putBytes(statuses, rows);
+            putBytes(types, rows);
+            rows = 0;
+            dictionary.clear();
+            dictionaryValues.clear();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (rows > 0) {
+                writeBlock();
+            }
+            ensureRemaining(4);
+            buffer.putInt(0);
+        }
+    }
+
+    private void putInts(int[] values, int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            ensureRemaining(4);
+            int n = Math.min(count - offset, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, offset, n);
+            buffer.position(buffer.position() + n * 4);
+            offset += n;
+        }
+    }
+
+    private void putBytes(byte[] values, int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            ensureRemaining(1);
+            int n = Math.min(count - offset, buffer.remaining());
+            buffer.put(values, offset, n);
+            offset += n;
+        }
+    }
+
+    private void putByte(char c) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) c);
+    }
+
+    private void putAscii(String value) throws IOException {
+        ensureRemaining(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private void putNumber(long value) throws IOException {
+        ensureRemaining(20);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    // ISO yyyy-MM-dd without building a String per date
+    private void putDate(LocalDate date) throws IOException {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            putAscii(date.toString());
+            return;
+        }
+        ensureRemaining(10);
+        buffer.put((byte) ('0' + year / 1000)).put((byte) ('0' + year / 100 % 10))
+                .put((byte) ('0' + year / 10 % 10)).put((byte) ('0' + year % 10)).put((byte) '-')
+                .put((byte) ('0' + date.getMonthValue() / 10)).put((byte) ('0' + date.getMonthValue() % 10))
+                .put((byte) '-')
+                .put((byte) ('0' + date.getDayOfMonth() / 10)).put((byte) ('0' + date.getDayOfMonth() % 10));
+    }
+
+    private void ensureRemaining(int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,109 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-employee index of decided and cancelled requests, kept as a sorted
+ * array of {@code startDay << 32 | requestId} keys.
+ *
+ * Only the keys are held here; requests are looked up in the system's
+ * request map when a page is read, so an employee's history costs 8 bytes
+ * per request instead of a reference list pinned to the Employee. Each
+ * employee's keys are guarded by that employee's lock stripe.
+ *
+ * History is paged, not loaded lazily: decided requests stay resident in
+ * the request map. Compaction rewrites request shards from that map, and a
+ * shard holds every request of many employees with no index by request,
+ * so evicting decided requests would need a shard format that can be
+ * merged and read by employee first.
+ */
+public class LeaveHistoryIndex {
+    private final Map<Integer, Keys> byEmployee = new ConcurrentHashMap<>();
+
+    private static class Keys {
+        long[] keys = new long[4];
+        int size;
+
+        // Inserts in order; returns false if the key is already present
+        boolean add(long key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0)
+                return false;
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            keys[index] = key;
+            size++;
+            return true;
+        }
+    }
+
+    static long key(LeaveRequest request) {
+        return request.getStartDate().toEpochDay() << 32 | (request.getRequestId() & 0xFFFFFFFFL);
+    }
+
+    static int requestId(long key) {
+        return (int) key;
+    }
+
+    // Adds the request to its employee's history; repeated adds are ignored
+    public void add(LeaveRequest request) {
+        int employeeId = request.getEmployee().getEmployeeId();
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employeeId);
+        lock.lock();
+        try {
+            byEmployee.computeIfAbsent(employeeId, id -> new Keys()).add(key(request));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int count(int employeeId) {
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employeeId);
+        lock.lock();
+        try {
+            Keys own = byEmployee.get(employeeId);
+            return own == null ? 0 : own.size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Up to {@code limit} keys of requests starting within [from, to], newest
+     * start first, beginning after {@code afterKey} (Long.MAX_VALUE for the
+     * first page). A null bound is open.
+     */
+    public long[] page(int employeeId, LocalDate from, LocalDate to, long afterKey, int limit) {
+        long lowest = from == null ? Long.MIN_VALUE : from.toEpochDay() << 32;
+        long highest = to == null ? Long.MAX_VALUE : (to.toEpochDay() << 32) | 0xFFFFFFFFL;
+        long upper = Math.min(highest, afterKey == Long.MAX_VALUE ? Long.MAX_VALUE : afterKey - 1);
+
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employeeId);
+        lock.lock();
+        try {
+            Keys own = byEmployee.get(employeeId);
+            if (own == null)
+                return new long[0];
+            // Index of the last key <= upper
+            int index = Arrays.binarySearch(own.keys, 0, own.size, upper);
+            index = index >= 0 ? index : -index - 2;
+            long[] page = new long[Math.max(0, Math.min(limit, index + 1))];
+            int n = 0;
+            while (n < page.length && index >= 0 && own.keys[index] >= lowest) {
+                page[n++] = own.keys[index--];
+            }
+            return n == page.length ? page : Arrays.copyOf(page, n);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        byEmployee.clear();
+    }
+}
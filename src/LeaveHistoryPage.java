@@ -0,0 +1,28 @@
+import java.util.List;
+
+/**
+ * One page of an employee's leave history, newest start date first. Pass
+ * {@link #getNextCursor()} back to read the following page.
+ */
+public class LeaveHistoryPage {
+    private final List<LeaveRequest> requests;
+    private final String nextCursor;
+
+    public LeaveHistoryPage(List<LeaveRequest> requests, String nextCursor) {
+        this.requests = requests;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<LeaveRequest> getRequests() {
+        return requests;
+    }
+
+    // Opaque position after the last request, or null on the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
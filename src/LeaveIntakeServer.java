@@ -0,0 +1,418 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP/JSON front end for a LeaveTrackingSystem, built on the JDK's
+ * embedded server.
+ *
+ * <pre>
+ * POST /requests                    {"employeeId", "startDate", "endDate",
+ *                                    "reason", "type", "medicalCertificate"}
+ * POST /requests/{id}/approve       {"approver"}; 422 lists policy violations
+ * POST /requests/{id}/deny          {"approver", "reason"}
+ * POST /requests/{id}/cancel        {"cancelledBy"}
+ * GET  /requests/{id}
+ * GET  /employees/{id}/history    ?limit=&cursor=&from=&to=, newest first
+ * GET  /departments/stats
+ * GET  /departments/{name}/stats
+ * GET  /metrics                     plain-text metrics report
+ * </pre>
+ *
+ * Each exchange runs on its own virtual thread when the JVM supports them,
+ * otherwise on a bounded pool. At most {@code maxInFlight} requests are
+ * worked on at once; beyond that, or when the fallback pool and its queue
+ * are full, the server answers 503 straight away. Request bodies are
+ * capped, so memory stays bounded under any number of clients. Handlers
+ * never run on the server's dispatcher thread, so accepting connections is
+ * not held up by slow requests.
+ *
+ * Usage: java LeaveIntakeServer [port] [dataDir] [maxInFlight]
+ */
+public class LeaveIntakeServer {
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+    private static final int FALLBACK_POOL_THREADS = 200;
+    private static final int FALLBACK_QUEUE_CAPACITY = 10_000;
+    // Answer 503 to exchanges the fallback pool rejected
+    private static final int OVERFLOW_THREADS = 4;
+    private static final int OVERFLOW_QUEUE_CAPACITY = 1_000;
+    private static final int DEFAULT_HISTORY_PAGE = 50;
+    private static final int MAX_HISTORY_PAGE = 1000;
+    // Set on overflow threads while they run an exchange the executor rejected
+    private static final ThreadLocal<Boolean> REJECTED = new ThreadLocal<>();
+
+    private final LeaveTrackingSystem system;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ExecutorService overflow;
+    private final Semaphore inFlight;
+
+    public LeaveIntakeServer(LeaveTrackingSystem system, int port, int maxInFlight) throws IOException {
+        this.system = system;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = newPerTaskExecutor(FALLBACK_POOL_THREADS);
+        this.overflow = new ThreadPoolExecutor(OVERFLOW_THREADS, OVERFLOW_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(OVERFLOW_QUEUE_CAPACITY), new ThreadPoolExecutor.AbortPolicy());
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(this::dispatch);
+        server.createContext("/requests", exchange -> handle(exchange, this::routeRequests));
+        server.createContext("/employees", exchange -> handle(exchange, this::routeEmployees));
+        server.createContext("/departments", exchange -> handle(exchange, this::routeDepartments));
+        server.createContext("/metrics", exchange -> handle(exchange, this::routeMetrics));
+    }
+
+    /**
+     * A virtual-thread-per-task executor when the runtime has one (Java 21+,
+     * looked up reflectively so this compiles on 17), otherwise a pool of
+     * fallbackThreads with a bounded queue that rejects tasks once it is full.
+     */
+    static ExecutorService newPerTaskExecutor(int fallbackThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return new ThreadPoolExecutor(fallbackThreads, fallbackThreads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(FALLBACK_QUEUE_CAPACITY), new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    /**
+     * Called by the server's dispatcher thread for each exchange. One the
+     * executor rejects still has to be read before it can be answered, so it
+     * goes to the small overflow pool, which replies 503. If that is full
+     * as well, the rejection reaches the server and it closes the
+     * connection.
+     */
+    private void dispatch(Runnable exchange) {
+        try {
+            executor.execute(exchange);
+        } catch (RejectedExecutionException e) {
+            overflow.execute(() -> {
+                REJECTED.set(Boolean.TRUE);
+                try {
+                    exchange.run();
+                } finally {
+                    REJECTED.remove();
+                }
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stops accepting connections, waits up to delaySeconds for open exchanges
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        overflow.shutdown();
+    }
+
+    private interface Route {
+        Response handle(String method, String[] path, HttpExchange exchange) throws IOException;
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+        final String contentType;
+
+        Response(int status, String body, String contentType) {
+            this.status = status;
+            this.body = body;
+            this.contentType = contentType;
+        }
+
+        static Response json(int status, String body) {
+            return new Response(status, body, "application/json");
+        }
+
+        static Response error(int status, String message) {
+            return json(status, "{\"error\":" + Json.quote(message) + "}");
+        }
+    }
+
+    // Thrown by handlers for requests the client got wrong
+    private static class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        BadRequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        if (REJECTED.get() != null || !inFlight.tryAcquire()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, Response.error(503, "Server busy"));
+            return;
+        }
+        try {
+            String[] path = exchange.getRequestURI().getRawPath().substring(1).split("/");
+            Response response;
+            try {
+                response = route.handle(exchange.getRequestMethod(), path, exchange);
+            } catch (BadRequestException e) {
+                response = Response.error(e.status, e.getMessage());
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                response = Response.error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("Error handling " + exchange.getRequestURI() + ": " + e);
+                response = Response.error(500, "Internal error");
+            }
+            send(exchange, response);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", response.contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Response routeRequests(String method, String[] path, HttpExchange exchange) throws IOException {
+        if (path.length == 1 && method.equals("POST")) {
+            return createRequest(readJson(exchange));
+        }
+        if (path.length == 2 && method.equals("GET")) {
+            LeaveRequest request = system.getLeaveRequest(parseId(path[1]));
+            return request == null ? Response.error(404, "No such request")
+                    : Response.json(200, requestJson(request));
+        }
+        if (path.length == 3 && method.equals("POST")) {
+            int requestId = parseId(path[1]);
+            if (system.getLeaveRequest(requestId) == null)
+                return Response.error(404, "No such request");
+            Map<String, Object> body = readJson(exchange);
+            boolean done = switch (path[2]) {
+                case "approve" -> system.approveRequest(requestId, requireString(body, "approver"));
+                case "deny" -> system.denyRequest(requestId, requireString(body, "approver"),
+                        optionalString(body, "reason", ""));
+                case "cancel" -> system.cancelLeaveRequest(requestId, requireString(body, "cancelledBy"));
+                default -> throw new BadRequestException(404, "Not found");
+            };
+            LeaveRequest request = system.getLeaveRequest(requestId);
+            if (done)
+                return Response.json(200, requestJson(request));
+            if (request.getStatus() == LeaveRequest.Status.PENDING)
+                return Response.json(422, violationsJson(request.validate()));
+            return Response.error(409, "Request cannot change from " + request.getStatus());
+        }
+        return Response.error(path.length <= 3 ? 405 : 404, "Unsupported request");
+    }
+
+    private Response createRequest(Map<String, Object> body) {
+        Employee employee = system.getEmployee(requireInt(body, "employeeId"));
+        if (employee == null)
+            return Response.error(404, "No such employee");
+
+        LocalDate startDate = LocalDate.parse(requireString(body, "startDate"));
+        LocalDate endDate = LocalDate.parse(requireString(body, "endDate"));
+        LeaveRequest.LeaveType type = LeaveRequest.LeaveType.valueOf(requireString(body, "type"));
+        if (endDate.isBefore(startDate))
+            throw new BadRequestException(400, "End date is before start date");
+
+        LeaveRequest request;
+        try {
+            request = system.createLeaveRequest(employee, startDate, endDate,
+                    optionalString(body, "reason", ""), type,
+                    Boolean.TRUE.equals(body.get("medicalCertificate")));
+        } catch (OverlappingLeaveException e) {
+            // Conflicts with the stored data; other invalid input is a 400
+            return Response.error(409, e.getMessage());
+        }
+        return Response.json(201, requestJson(request));
+    }
+
+    private Response routeEmployees(String method, String[] path, HttpExchange exchange) {
+        if (path.length != 3 || !path[2].equals("history"))
+            return Response.error(404, "Not found");
+        if (!method.equals("GET"))
+            return Response.error(405, "Unsupported method");
+
+        int employeeId = parseId(path[1]);
+        if (system.getEmployee(employeeId) == null)
+            return Response.error(404, "No such employee");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_HISTORY_PAGE;
+        if (limit <= 0 || limit > MAX_HISTORY_PAGE)
+            throw new BadRequestException(400, "limit must be between 1 and " + MAX_HISTORY_PAGE);
+        LocalDate from = query.containsKey("from") ? LocalDate.parse(query.get("from")) : null;
+        LocalDate to = query.containsKey("to") ? LocalDate.parse(query.get("to")) : null;
+
+        LeaveHistoryPage page = system.getEmployeeLeaveHistory(employeeId, from, to, limit, query.get("cursor"));
+        StringBuilder json = new StringBuilder("{\"requests\":[");
+        boolean first = true;
+        for (LeaveRequest request : page.getRequests()) {
+            if (!first)
+                json.append(',');
+            json.append(requestJson(request));
+            first = false;
+        }
+        json.append("],\"nextCursor\":")
+                .append(page.hasMore() ? Json.quote(page.getNextCursor()) : "null");
+        return Response.json(200, json.append('}').toString());
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null)
+            return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private Response routeDepartments(String method, String[] path, HttpExchange exchange) {
+        if (!method.equals("GET"))
+            return Response.error(405, "Unsupported method");
+        if (path.length == 2 && path[1].equals("stats")) {
+            StringBuilder json = new StringBuilder("[");
+            for (DepartmentStats stats : system.getAllDepartmentStats()) {
+                if (json.length() > 1)
+                    json.append(',');
+                json.append(statsJson(stats));
+            }
+            return Response.json(200, json.append(']').toString());
+        }
+        if (path.length == 3 && path[2].equals("stats")) {
+            String department = URLDecoder.decode(path[1], StandardCharsets.UTF_8);
+            return Response.json(200, statsJson(system.getDepartmentStats(department)));
+        }
+        return Response.error(404, "Not found");
+    }
+
+    private Response routeMetrics(String method, String[] path, HttpExchange exchange) {
+        return new Response(200, system.getMetrics().getReport(), "text/plain");
+    }
+
+    private static String requestJson(LeaveRequest request) {
+        return "{\"requestId\":" + request.getRequestId()
+                + ",\"employeeId\":" + request.getEmployee().getEmployeeId()
+                + ",\"type\":" + Json.quote(request.getLeaveType().toString())
+                + ",\"startDate\":" + Json.quote(request.getStartDate().toString())
+                + ",\"endDate\":" + Json.quote(request.getEndDate().toString())
+                + ",\"days\":" + request.getNumberOfDays()
+                + ",\"status\":" + Json.quote(request.getStatus().toString())
+                + ",\"reason\":" + Json.quote(request.getReason()) + "}";
+    }
+
+    // Still pending after a failed approval, so the request breaks its policy
+    private static String violationsJson(List<PolicyViolation> violations) {
+        StringBuilder json = new StringBuilder("{\"error\":\"Request breaks leave policy\",\"violations\":[");
+        boolean first = true;
+        for (PolicyViolation violation : violations) {
+            if (!first)
+                json.append(',');
+            json.append("{\"rule\":").append(Json.quote(violation.getRule()))
+                    .append(",\"message\":").append(Json.quote(violation.getMessage())).append('}');
+            first = false;
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String statsJson(DepartmentStats stats) {
+        StringBuilder json = new StringBuilder("{\"department\":").append(Json.quote(stats.getDepartment()));
+        for (LeaveRequest.Status status : LeaveRequest.Status.values()) {
+            json.append(",\"").append(status.toString().toLowerCase()).append("\":{\"count\":")
+                    .append(stats.getCount(status)).append(",\"days\":").append(stats.getDays(status)).append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    private static Map<String, Object> readJson(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES)
+                throw new BadRequestException(413, "Request body too large");
+            return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int parseId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException(404, "Not found");
+        }
+    }
+
+    private static int requireInt(Map<String, Object> body, String key) {
+        Object value = body.get(key);
+        if (!(value instanceof Long) || (Long) value != ((Long) value).intValue())
+            throw new BadRequestException(400, "Field '" + key + "' must be an integer");
+        return ((Long) value).intValue();
+    }
+
+    private static String requireString(Map<String, Object> body, String key) {
+        Object value = body.get(key);
+        if (!(value instanceof String) || ((String) value).isEmpty())
+            throw new BadRequestException(400, "Field '" + key + "' is required");
+        return checkStorable(key, (String) value);
+    }
+
+    // Data files are comma-separated, so free text must not contain separators
+    private static String optionalString(Map<String, Object> body, String key, String defaultValue) {
+        Object value = body.get(key);
+        return value instanceof String ? checkStorable(key, (String) value) : defaultValue;
+    }
+
+    private static String checkStorable(String key, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '\n' || c == '\r')
+                throw new BadRequestException(400, "Field '" + key + "' must not contain commas or line breaks");
+        }
+        return value;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Path dataDir = Paths.get(args.length > 1 ? args[1] : "leavetracker_data");
+        int maxInFlight = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        LeaveTrackingSystem system = new LeaveTrackingSystem(dataDir, WorkingDayCalendar.ALL_DAYS);
+        LeaveIntakeServer server = new LeaveIntakeServer(system, port, maxInFlight);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            system.close();
+        }));
+        server.start();
+        System.out.println("Leave intake server listening on port " + server.getPort());
+    }
+}
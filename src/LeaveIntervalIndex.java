@@ -0,0 +1,248 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Date-range index over active (pending or approved) leave requests, kept
+ * per employee and per department.
+ *
+ * Each set is an interval tree: a balanced search tree ordered by start
+ * day, where every node also holds the latest end day in its subtree. An
+ * overlap query skips any subtree that ends before the range and stops at
+ * the first request starting after it, so it costs O(log n + matches)
+ * however long the longest request is.
+ */
+public class LeaveIntervalIndex {
+    private final Map<Integer, IntervalSet> byEmployee = new ConcurrentHashMap<>();
+    private final Map<String, IntervalSet> byDepartment = new ConcurrentHashMap<>();
+
+    // AVL tree keyed by start epoch day in the high bits and request ID in the low bits
+    private static class IntervalSet {
+        private static class Node {
+            long key;
+            long start;
+            long end;
+            LeaveRequest request;
+            Node left;
+            Node right;
+            int height = 1;
+            // Latest end day of this subtree
+            long maxEnd;
+
+            Node(long key, LeaveRequest request) {
+                set(key, request);
+                this.maxEnd = end;
+            }
+
+            void set(long key, LeaveRequest request) {
+                this.key = key;
+                this.request = request;
+                this.start = request.getStartDate().toEpochDay();
+                this.end = request.getEndDate().toEpochDay();
+            }
+        }
+
+        private Node root;
+
+        private static long key(LeaveRequest request) {
+            return (request.getStartDate().toEpochDay() << 32) | (request.getRequestId() & 0xFFFFFFFFL);
+        }
+
+        synchronized void add(LeaveRequest request) {
+            root = insert(root, key(request), request);
+        }
+
+        synchronized void remove(LeaveRequest request) {
+            root = delete(root, key(request));
+        }
+
+        synchronized List<LeaveRequest> overlapping(long fromDay, long toDay) {
+            List<LeaveRequest> result = new ArrayList<>();
+            collect(root, fromDay, toDay, result);
+            return result;
+        }
+
+        synchronized List<LeaveRequest> all() {
+            List<LeaveRequest> result = new ArrayList<>();
+            collect(root, Long.MIN_VALUE, Long.MAX_VALUE, result);
+            return result;
+        }
+
+        // Adds the requests of the subtree overlapping [fromDay, toDay], in start order
+        private static void collect(Node node, long fromDay, long toDay, List<LeaveRequest> result) {
+            if (node == null || node.maxEnd < fromDay)
+                return;
+            collect(node.left, fromDay, toDay, result);
+            if (node.start > toDay)
+                return;
+            if (node.end >= fromDay) {
+                result.add(node.request);
+            }
+            collect(node.right, fromDay, toDay, result);
+        }
+
+        private static Node insert(Node node, long key, LeaveRequest request) {
+            if (node == null)
+                return new Node(key, request);
+            if (key < node.key) {
+                node.left = insert(node.left, key, request);
+            } else if (key > node.key) {
+                node.right = insert(node.right, key, request);
+            } else {
+                node.set(key, request);
+            }
+            return rebalance(node);
+        }
+
+        private static Node delete(Node node, long key) {
+            if (node == null)
+                return null;
+            if (key < node.key) {
+                node.left = delete(node.left, key);
+            } else if (key > node.key) {
+                node.right = delete(node.right, key);
+            } else if (node.left == null || node.right == null) {
+                return node.left != null ? node.left : node.right;
+            } else {
+                // Take over the next request in order and remove it below
+                Node next = node.right;
+                while (next.left != null) {
+                    next = next.left;
+                }
+                node.set(next.key, next.request);
+                node.right = delete(node.right, next.key);
+            }
+            return rebalance(node);
+        }
+
+        private static int height(Node node) {
+            return node == null ? 0 : node.height;
+        }
+
+        private static void update(Node node) {
+            node.height = 1 + Math.max(height(node.left), height(node.right));
+            long maxEnd = node.end;
+            if (node.left != null) {
+                maxEnd = Math.max(maxEnd, node.left.maxEnd);
+            }
+            if (node.right != null) {
+                maxEnd = Math.max(maxEnd, node.right.maxEnd);
+            }
+            node.maxEnd = maxEnd;
+        }
+
+        private static Node rebalance(Node node) {
+            update(node);
+            int balance = height(node.left) - height(node.right);
+            if (balance > 1) {
+                if (height(node.left.left) < height(node.left.right)) {
+                    node.left = rotateLeft(node.left);
+                }
+                return rotateRight(node);
+            }
+            if (balance < -1) {
+                if (height(node.right.right) < height(node.right.left)) {
+                    node.right = rotateRight(node.right);
+                }
+                return rotateLeft(node);
+            }
+            return node;
+        }
+
+        private static Node rotateRight(Node node) {
+            Node top = node.left;
+            node.left = top.right;
+            top.right = node;
+            update(node);
+            update(top);
+            return top;
+        }
+
+        private static Node rotateLeft(Node node) {
+            Node top = node.right;
+            node.right = top.left;
+            top.left = node;
+            update(node);
+            update(top);
+            return top;
+        }
+    }
+
+    // Employees without a department are indexed under ""
+    private static String key(String department) {
+        return department == null ? "" : department;
+    }
+
+    private static boolean isActive(LeaveRequest.Status status) {
+        return status == LeaveRequest.Status.PENDING || status == LeaveRequest.Status.APPROVED;
+    }
+
+    public void add(LeaveRequest request) {
+        if (!isActive(request.getStatus()))
+            return;
+        Employee employee = request.getEmployee();
+        byEmployee.computeIfAbsent(employee.getEmployeeId(), id -> new IntervalSet()).add(request);
+        byDepartment.computeIfAbsent(key(employee.getDepartment()), d -> new IntervalSet()).add(request);
+    }
+
+    public void onStatusChange(LeaveRequest request, LeaveRequest.Status from, LeaveRequest.Status to) {
+        if (isActive(from) && !isActive(to)) {
+            Employee employee = request.getEmployee();
+            IntervalSet own = byEmployee.get(employee.getEmployeeId());
+            if (own != null) {
+                own.remove(request);
+            }
+            IntervalSet dept = byDepartment.get(key(employee.getDepartment()));
+            if (dept != null) {
+                dept.remove(request);
+            }
+        } else if (!isActive(from) && isActive(to)) {
+            add(request);
+        }
+    }
+
+    public void onDepartmentChange(Employee employee, String fromDepartment, String toDepartment) {
+        IntervalSet own = byEmployee.get(employee.getEmployeeId());
+        if (own == null)
+            return;
+        IntervalSet from = byDepartment.get(key(fromDepartment));
+        IntervalSet to = byDepartment.computeIfAbsent(key(toDepartment), d -> new IntervalSet());
+        for (LeaveRequest request : own.all()) {
+            if (from != null) {
+                from.remove(request);
+            }
+            to.add(request);
+        }
+    }
+
+    public void clear() {
+        byEmployee.clear();
+        byDepartment.clear();
+    }
+
+    // Active requests of this employee that share at least one day with [from, to]
+    public List<LeaveRequest> findOverlapping(int employeeId, LocalDate from, LocalDate to) {
+        IntervalSet set = byEmployee.get(employeeId);
+        return set == null ? new ArrayList<>() : set.overlapping(from.toEpochDay(), to.toEpochDay());
+    }
+
+    public List<LeaveRequest> findInDepartment(String department, LocalDate from, LocalDate to) {
+        IntervalSet set = byDepartment.get(key(department));
+        return set == null ? new ArrayList<>() : set.overlapping(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // Employees of the department with approved leave covering the given day
+    public List<Employee> findEmployeesOnLeave(String department, LocalDate day) {
+        Set<Employee> result = new LinkedHashSet<>();
+        for (LeaveRequest request : findInDepartment(department, day, day)) {
+            if (request.getStatus() == LeaveRequest.Status.APPROVED) {
+                result.add(request.getEmployee());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+}
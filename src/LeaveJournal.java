@@ -0,0 +1,258 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only write-ahead log for leave request changes.
+ *
+ * Each create/approve/deny/cancel is appended as one CSV-style line instead of
+ * rewriting the whole requests file. Lines are written to the channel
+ * immediately and forced to disk in batches of {@code syncBatchSize}
+ * records, at most {@code maxSyncDelayMillis} after being appended, or
+ * whenever {@link #sync()} is called. All methods are synchronized so
+ * request threads can append concurrently.
+ *
+ * Every record starts with its operation, a sequence number that keeps
+ * increasing across truncations, and the epoch millis of the change, which
+ * replay gives the status history entries it restores. Employee rows store
+ * the sequence their balances include, so replay can tell which balance
+ * changes are already in the employees files.
+ */
+public class LeaveJournal {
+    public enum Operation {
+        EMPLOYEE, CREATE, APPROVE, DENY, CANCEL
+    }
+
+    private final Path path;
+    private final int syncBatchSize;
+    private final long maxSyncDelayMillis;
+    private FileChannel channel;
+    // Forces records a short batch leaves unsynced; started by the first such append
+    private ScheduledExecutorService syncTimer;
+    private boolean syncScheduled;
+    private int unsyncedRecords;
+    private int recordCount;
+    private long bytesWritten;
+    private long lastSequence;
+
+    public LeaveJournal(Path path, int syncBatchSize, long maxSyncDelayMillis) {
+        this.path = path;
+        this.syncBatchSize = syncBatchSize;
+        this.maxSyncDelayMillis = maxSyncDelayMillis;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Number of records appended since the journal was last truncated
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    // Sequence number of the newest record appended or replayed
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    // Makes new records number after sequence, e.g. one stored in the data files
+    public synchronized void advanceSequence(long sequence) {
+        lastSequence = Math.max(lastSequence, sequence);
+    }
+
+    // Bytes appended over the lifetime of this instance
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Replays every record in the journal, oldest first. The handler is
+     * expected to skip records it cannot parse, such as a torn final line
+     * left by a crash.
+     */
+    public synchronized void replay(Consumer<String[]> handler) throws IOException {
+        if (!Files.exists(path))
+            return;
+
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty())
+                    continue;
+                String[] parts = line.split(",", -1);
+                handler.accept(parts);
+                recordCount++;
+                if (parts.length > 1) {
+                    try {
+                        lastSequence = Math.max(lastSequence, Long.parseLong(parts[1]));
+                    } catch (NumberFormatException e) {
+                        // Torn or unreadable; the handler has skipped it
+                    }
+                }
+            }
+        }
+    }
+
+    public synchronized void appendEmployee(Employee employee, long timestampMillis) throws IOException {
+        append(String.format("%s,%d,%d,%d,%s,%s,%d,%d",
+                Operation.EMPLOYEE,
+                ++lastSequence,
+                timestampMillis,
+                employee.getEmployeeId(),
+                employee.getName(),
+                employee.getDepartment(),
+                employee.getAnnualLeaveBalance(),
+                employee.getSickLeaveBalance()));
+    }
+
+    public synchronized void appendCreate(LeaveRequest request, long timestampMillis) throws IOException {
+        append(String.format("%s,%d,%d,%d,%d,%s,%s,%s,%s,%b",
+                Operation.CREATE,
+                ++lastSequence,
+                timestampMillis,
+                request.getRequestId(),
+                request.getEmployee().getEmployeeId(),
+                request.getStartDate(),
+                request.getEndDate(),
+                request.getReason(),
+                request.getLeaveType(),
+                (request instanceof SickLeaveRequest) && ((SickLeaveRequest) request).hasMedicalCertificate()));
+    }
+
+    public synchronized void appendApprove(int requestId, String approver, int daysCharged, long timestampMillis)
+            throws IOException {
+        append(String.format("%s,%d,%d,%d,%s,%d", Operation.APPROVE, ++lastSequence, timestampMillis,
+                requestId, approver, daysCharged));
+    }
+
+    public synchronized void appendDeny(int requestId, String approver, String reason, long timestampMillis)
+            throws IOException {
+        append(String.format("%s,%d,%d,%d,%s,%s", Operation.DENY, ++lastSequence, timestampMillis,
+                requestId, approver, reason));
+    }
+
+    // daysRefunded is 0 when the request was still pending
+    public synchronized void appendCancel(int requestId, String cancelledBy, int daysRefunded, long timestampMillis)
+            throws IOException {
+        append(String.format("%s,%d,%d,%d,%s,%d", Operation.CANCEL, ++lastSequence, timestampMillis,
+                requestId, cancelledBy, daysRefunded));
+    }
+
+    /**
+     * Group-commits a whole approval batch: every decision is written with a
+     * single channel write and forced to disk once.
+     */
+    public synchronized void appendDecisions(ApprovalBatchResult batch, String approver) throws IOException {
+        if (batch.size() == 0)
+            return;
+
+        StringBuilder records = new StringBuilder(batch.size() * 32);
+        for (ApprovalBatchResult.Decision decision : batch.getDecisions()) {
+            if (decision.isApproved()) {
+                records.append(Operation.APPROVE).append(',').append(++lastSequence)
+                        .append(',').append(decision.getDecidedAtMillis()).append(',').append(decision.getRequestId())
+                        .append(',').append(approver).append(',').append(decision.getDaysCharged()).append('\n');
+            } else {
+                records.append(Operation.DENY).append(',').append(++lastSequence)
+                        .append(',').append(decision.getDecidedAtMillis()).append(',').append(decision.getRequestId())
+                        .append(',').append(approver).append(',').append(decision.getReason()).append('\n');
+            }
+        }
+        write(records.toString());
+        recordCount += batch.size();
+        unsyncedRecords += batch.size();
+        sync();
+    }
+
+    private void append(String record) throws IOException {
+        write(record + "\n");
+        recordCount++;
+        if (++unsyncedRecords >= syncBatchSize) {
+            sync();
+        } else {
+            scheduleSync();
+        }
+    }
+
+    private void scheduleSync() {
+        if (syncScheduled)
+            return;
+        if (syncTimer == null) {
+            syncTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "leave-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        syncScheduled = true;
+        syncTimer.schedule(this::timedSync, maxSyncDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void timedSync() {
+        syncScheduled = false;
+        try {
+            sync();
+        } catch (IOException e) {
+            // Left unsynced; the next append schedules another attempt
+            System.err.println("Error syncing journal: " + e.getMessage());
+        }
+    }
+
+    private void write(String records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+        FileChannel ch = openChannel();
+        while (buffer.hasRemaining()) {
+            bytesWritten += ch.write(buffer);
+        }
+    }
+
+    // Forces all appended records to disk
+    public synchronized void sync() throws IOException {
+        if (channel != null && unsyncedRecords > 0) {
+            channel.force(false);
+            unsyncedRecords = 0;
+        }
+    }
+
+    /**
+     * Discards all records. Only call this once their effects have been
+     * written to the snapshot files.
+     */
+    public synchronized void truncate() throws IOException {
+        FileChannel ch = openChannel();
+        ch.truncate(0);
+        ch.force(true);
+        unsyncedRecords = 0;
+        recordCount = 0;
+    }
+
+    public synchronized void close() throws IOException {
+        if (syncTimer != null) {
+            syncTimer.shutdownNow();
+            syncTimer = null;
+            syncScheduled = false;
+        }
+        if (channel != null) {
+            sync();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+}
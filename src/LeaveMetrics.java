@@ -0,0 +1,192 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms, call and error counters, bytes written and gauges
+ * for one LeaveTrackingSystem.
+ *
+ * Timing an operation costs two System.nanoTime() calls and a few atomic
+ * increments, so it stays on in production. The numbers are published
+ * over JMX and can be dumped as text on a schedule.
+ */
+public class LeaveMetrics implements LeaveMetricsMXBean {
+    public enum Operation {
+        LOAD_EMPLOYEES, LOAD_REQUESTS, SAVE_EMPLOYEES, SAVE_REQUESTS,
+        CREATE, APPROVE, DENY, CANCEL, JOURNAL_COMMIT, COMPACT, BACKUP, RESTORE,
+        BINARY_SAVE, BINARY_LOAD, EXPORT, IMPORT, ROLLOVER,
+        // One event batch handled by a subscriber
+        EVENT_BATCH
+    }
+
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder[] errors = new LongAdder[Operation.values().length];
+    private final LongAdder bytesWritten = new LongAdder();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private ObjectName objectName;
+    private ScheduledExecutorService dumpExecutor;
+
+    public LeaveMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            errors[i] = new LongAdder();
+        }
+    }
+
+    // Records the time since startNanos, taken from System.nanoTime()
+    public void recordSince(Operation operation, long startNanos) {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public void recordError(Operation operation) {
+        errors[operation.ordinal()].increment();
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void registerGauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public void unregisterGauge(String name) {
+        gauges.remove(name);
+    }
+
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Operation operation : Operation.values()) {
+            result.put(operation.name(), latencies[operation.ordinal()].getCount());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Operation operation : Operation.values()) {
+            result.put(operation.name(), errors[operation.ordinal()].sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getLatencyMicros() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies[operation.ordinal()];
+            result.put(operation.name() + ".p50", histogram.getPercentile(50) / 1000);
+            result.put(operation.name() + ".p99", histogram.getPercentile(99) / 1000);
+            result.put(operation.name() + ".p999", histogram.getPercentile(99.9) / 1000);
+            result.put(operation.name() + ".max", histogram.getMax() / 1000);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> result = new TreeMap<>();
+        gauges.forEach((name, value) -> result.put(name, value.getAsLong()));
+        return result;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Leave tracker metrics at %s%n", LocalDateTime.now()));
+        report.append(String.format("%-16s %10s %8s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "mean us", "p50 us", "p99 us", "max us"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies[operation.ordinal()];
+            long errorCount = errors[operation.ordinal()].sum();
+            if (histogram.getCount() == 0 && errorCount == 0)
+                continue;
+            report.append(String.format("%-16s %10d %8d %10.1f %10d %10d %10d%n",
+                    operation, histogram.getCount(), errorCount, histogram.getMean() / 1000,
+                    histogram.getPercentile(50) / 1000, histogram.getPercentile(99) / 1000,
+                    histogram.getMax() / 1000));
+        }
+        report.append(String.format("bytes written: %d%n", getBytesWritten()));
+        getGauges().forEach((name, value) -> report.append(String.format("%s: %d%n", name, value)));
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i].reset();
+            errors[i].reset();
+        }
+        bytesWritten.reset();
+    }
+
+    /**
+     * Registers this instance with the platform MBean server as
+     * leavetracker:type=LeaveMetrics,id=N. Failures are reported and
+     * otherwise ignored; metrics keep recording either way.
+     */
+    public synchronized void registerMBean() {
+        if (objectName != null)
+            return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("leavetracker:type=LeaveMetrics,id=" + INSTANCES.incrementAndGet());
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // Prints getReport() to out every period on a daemon thread
+    public synchronized void startPeriodicDump(long period, TimeUnit unit, PrintStream out) {
+        if (dumpExecutor != null)
+            return;
+        dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leave-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpExecutor.scheduleAtFixedRate(() -> out.print(getReport()), period, period, unit);
+    }
+
+    public synchronized void close() {
+        if (dumpExecutor != null) {
+            dumpExecutor.shutdownNow();
+            dumpExecutor = null;
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                System.err.println("Error unregistering metrics MBean: " + e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+import java.util.Map;
+
+/**
+ * JMX view of {@link LeaveMetrics}. Latencies are in microseconds.
+ */
+public interface LeaveMetricsMXBean {
+    // Completed calls per operation
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getErrorCounts();
+
+    // Keys are "<operation>.p50", ".p99", ".p999" and ".max"
+    Map<String, Long> getLatencyMicros();
+
+    Map<String, Long> getGauges();
+
+    long getBytesWritten();
+
+    String getReport();
+
+    void reset();
+}
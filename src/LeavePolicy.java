@@ -0,0 +1,49 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compiled rules for one department and leave type, checked in order.
+ * Each rule holds its limit and its ready-made violation, so a check is a
+ * few comparisons and allocates nothing.
+ */
+public class LeavePolicy {
+    interface Rule {
+        // The violation if the request breaks the rule, otherwise null
+        PolicyViolation check(LeaveRequest request);
+    }
+
+    private final Rule[] rules;
+
+    LeavePolicy(Rule[] rules) {
+        this.rules = rules;
+    }
+
+    // Stops at the first broken rule; used on every approval
+    public boolean allows(LeaveRequest request) {
+        for (Rule rule : rules) {
+            if (rule.check(request) != null)
+                return false;
+        }
+        return true;
+    }
+
+    // Every rule the request breaks, in rule order; empty if it may be approved
+    public List<PolicyViolation> evaluate(LeaveRequest request) {
+        List<PolicyViolation> violations = null;
+        for (Rule rule : rules) {
+            PolicyViolation violation = rule.check(request);
+            if (violation != null) {
+                if (violations == null) {
+                    violations = new ArrayList<>(2);
+                }
+                violations.add(violation);
+            }
+        }
+        return violations == null ? Collections.emptyList() : violations;
+    }
+
+    public int getRuleCount() {
+        return rules.length;
+    }
+}
@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Leave policies per department and leave type, read from an INI-style
+ * file and compiled into a {@link LeavePolicy} the first time each
+ * department and type is asked for.
+ *
+ * <pre>
+ * [*]                          rules for every department
+ * ANNUAL.maxDays = 14
+ * *.minNoticeDays = 1          rules for every leave type
+ *
+ * [Engineering]                overrides for one department
+ * ANNUAL.maxDays = 21
+ * UNPAID.allowed = false
+ * SICK.certificateAfterDays = off
+ * </pre>
+ *
+ * Rules: {@code maxDays} (calendar days per request), {@code minNoticeDays}
+ * (days between today and the start), {@code requiresBalance} (ANNUAL and
+ * SICK only), {@code certificateAfterDays} (SICK only) and {@code allowed}.
+ * A department's rule replaces the rule of the same name from {@code [*]},
+ * and {@code off} removes it. A file only changes the rules it names; the
+ * built-in defaults below stay in force for the rest.
+ */
+public class LeavePolicyEngine {
+    public static final String ALL_DEPARTMENTS = "*";
+
+    private static final String DEFAULT_RULES = """
+            [*]
+            ANNUAL.requiresBalance = true
+            ANNUAL.maxDays = 14
+            SICK.certificateAfterDays = 3
+            MATERNITY.maxDays = 182
+            PATERNITY.maxDays = 14
+            UNPAID.maxDays = 90
+            """;
+    private static final LeaveRequest.LeaveType[] TYPES = LeaveRequest.LeaveType.values();
+    private static final LeavePolicyEngine DEFAULTS = new LeavePolicyEngine();
+
+    // Department -> type -> rule name -> rule, where a null rule switches off an inherited one
+    private static class State {
+        final Map<String, Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>>> rules;
+        final Map<String, LeavePolicy[]> compiled = new ConcurrentHashMap<>();
+
+        State(Map<String, Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>>> rules) {
+            this.rules = rules;
+        }
+    }
+
+    private volatile State state;
+
+    // The built-in defaults
+    public LeavePolicyEngine() {
+        try {
+            state = new State(parse(DEFAULT_RULES.lines().toList(), "default policies", new HashMap<>()));
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    // Shared defaults for requests that do not belong to a system
+    public static LeavePolicyEngine defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * The defaults overlaid with the policy file. Throws IOException naming
+     * the line of any rule that cannot be read.
+     */
+    public static LeavePolicyEngine load(Path path) throws IOException {
+        LeavePolicyEngine engine = new LeavePolicyEngine();
+        engine.state = new State(parse(Files.readAllLines(path), path.getFileName().toString(),
+                copy(engine.state.rules)));
+        return engine;
+    }
+
+    // Switches to the other engine's rules; policies compiled before are dropped
+    public void replaceWith(LeavePolicyEngine other) {
+        state = other.state;
+    }
+
+    public LeavePolicy policyFor(String department, LeaveRequest.LeaveType type) {
+        State current = state;
+        LeavePolicy[] byType = current.compiled.computeIfAbsent(department == null ? "" : department,
+                d -> compile(current, d));
+        return byType[type.ordinal()];
+    }
+
+    private static LeavePolicy[] compile(State state, String department) {
+        Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>> shared = state.rules.get(ALL_DEPARTMENTS);
+        Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>> own = state.rules.get(department);
+        LeavePolicy[] byType = new LeavePolicy[TYPES.length];
+        for (LeaveRequest.LeaveType type : TYPES) {
+            Map<String, LeavePolicy.Rule> merged = new LinkedHashMap<>();
+            if (shared != null && shared.containsKey(type)) {
+                merged.putAll(shared.get(type));
+            }
+            if (own != null && own.containsKey(type)) {
+                merged.putAll(own.get(type));
+            }
+            List<LeavePolicy.Rule> rules = new ArrayList<>();
+            for (LeavePolicy.Rule rule : merged.values()) {
+                if (rule != null) {
+                    rules.add(rule);
+                }
+            }
+            byType[type.ordinal()] = new LeavePolicy(rules.toArray(new LeavePolicy.Rule[0]));
+        }
+        return byType;
+    }
+
+    private static Map<String, Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>>> copy(
+            Map<String, Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>>> rules) {
+        Map<String, Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>>> result = new HashMap<>();
+        rules.forEach((department, byType) -> {
+            Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>> typeCopy =
+                    new EnumMap<>(LeaveRequest.LeaveType.class);
+            byType.forEach((type, named) -> typeCopy.put(type, new LinkedHashMap<>(named)));
+            result.put(department, typeCopy);
+        });
+        return result;
+    }
+
+    private static Map<String, Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>>> parse(
+            List<String> lines, String source,
+            Map<String, Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>>> rules) throws IOException {
+        String department = null;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            try {
+                if (line.startsWith("[")) {
+                    if (!line.endsWith("]") || line.length() < 3)
+                        throw new IllegalArgumentException("Malformed department header");
+                    department = line.substring(1, line.length() - 1).strip();
+                    continue;
+                }
+                if (department == null)
+                    throw new IllegalArgumentException("Rule outside a [department] section");
+                int eq = line.indexOf('=');
+                int dot = line.indexOf('.');
+                if (eq < 0 || dot < 0 || dot > eq)
+                    throw new IllegalArgumentException("Expected TYPE.rule = value");
+                String typeName = line.substring(0, dot).strip();
+                String ruleName = line.substring(dot + 1, eq).strip();
+                String value = line.substring(eq + 1).strip();
+
+                Map<LeaveRequest.LeaveType, Map<String, LeavePolicy.Rule>> byType = rules.computeIfAbsent(
+                        department, d -> new EnumMap<>(LeaveRequest.LeaveType.class));
+                if (typeName.equals("*")) {
+                    for (LeaveRequest.LeaveType type : TYPES) {
+                        byType.computeIfAbsent(type, t -> new LinkedHashMap<>())
+                                .put(ruleName, buildRule(type, ruleName, value, true));
+                    }
+                } else {
+                    LeaveRequest.LeaveType type = LeaveRequest.LeaveType.valueOf(typeName);
+                    byType.computeIfAbsent(type, t -> new LinkedHashMap<>())
+                            .put(ruleName, buildRule(type, ruleName, value, false));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException(source + ":" + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return rules;
+    }
+
+    // Null for "off"; wildcard rules that do not apply to a type are skipped for it
+    private static LeavePolicy.Rule buildRule(LeaveRequest.LeaveType type, String name, String value,
+            boolean wildcard) {
+        if (value.equals("off"))
+            return null;
+        String label = label(type);
+        switch (name) {
+            case "maxDays" -> {
+                int limit = parseLimit(value);
+                PolicyViolation violation = new PolicyViolation(name,
+                        label + " leave cannot exceed " + limit + " days at once");
+                return request -> request.getNumberOfDays() > limit ? violation : null;
+            }
+            case "minNoticeDays" -> {
+                int days = parseLimit(value);
+                PolicyViolation violation = new PolicyViolation(name, days == 0
+                        ? label + " leave cannot start in the past"
+                        : label + " leave must be requested " + days + " days ahead");
+                return request -> request.getStartDate().toEpochDay() - LocalDate.now().toEpochDay() < days
+                        ? violation : null;
+            }
+            case "requiresBalance" -> {
+                if (!parseFlag(value))
+                    return null;
+                PolicyViolation violation = new PolicyViolation(name,
+                        "Insufficient " + label.toLowerCase() + " leave balance");
+                return switch (type) {
+                    case ANNUAL -> request -> request.getEmployee().getAnnualLeaveBalance()
+                            < request.getWorkingDays() ? violation : null;
+                    case SICK -> request -> request.getEmployee().getSickLeaveBalance()
+                            < request.getWorkingDays() ? violation : null;
+                    default -> {
+                        if (wildcard)
+                            yield null;
+                        throw new IllegalArgumentException(type + " leave has no balance to require");
+                    }
+                };
+            }
+            case "certificateAfterDays" -> {
+                if (type != LeaveRequest.LeaveType.SICK) {
+                    if (wildcard)
+                        return null;
+                    throw new IllegalArgumentException("certificateAfterDays applies to SICK leave only");
+                }
+                int limit = parseLimit(value);
+                PolicyViolation violation = new PolicyViolation(name,
+                        "Sick leave over " + limit + " days needs a medical certificate");
+                return request -> request.getNumberOfDays() > limit
+                        && !((SickLeaveRequest) request).hasMedicalCertificate() ? violation : null;
+            }
+            case "allowed" -> {
+                if (parseFlag(value))
+                    return null;
+                PolicyViolation violation = new PolicyViolation(name, label + " leave is not available");
+                return request -> violation;
+            }
+            default -> throw new IllegalArgumentException("Unknown rule " + name);
+        }
+    }
+
+    private static String label(LeaveRequest.LeaveType type) {
+        String name = type.name();
+        return name.charAt(0) + name.substring(1).toLowerCase();
+    }
+
+    private static int parseLimit(String value) {
+        try {
+            int limit = Integer.parseInt(value);
+            if (limit >= 0)
+                return limit;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Expected a non-negative number or off, got " + value);
+    }
+
+    private static boolean parseFlag(String value) {
+        return switch (value) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new IllegalArgumentException("Expected true, false or off, got " + value);
+        };
+    }
+}
@@ -1,7 +1,9 @@
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class LeaveRequest implements Approvable, Serializable {
     private static final long serialVersionUID = 1L;
@@ -9,9 +11,16 @@ public abstract class LeaveRequest implements Approvable, Serializable {
     protected final Employee employee;
     protected final LocalDate startDate;
     protected final LocalDate endDate;
-    protected Status status;
+    protected volatile Status status;
     protected final String reason;
-    protected final List<StatusChange> statusHistory = new ArrayList<>();
+    // Days deducted on approval; -1 until approved or when the data did not record it
+    private volatile int daysCharged = -1;
+    // Shared with the other requests of a system; see setHistoryLog
+    private transient volatile StatusHistoryLog historyLog;
+    // The system's policies; requests outside a system use the defaults
+    private transient volatile LeavePolicyEngine policyEngine;
+    // Newest committed version, read by snapshots
+    private transient volatile LeaveSnapshot.RequestVersion version;
 
     public enum Status {
         PENDING, APPROVED, REJECTED, CANCELLED
@@ -29,15 +38,90 @@ public abstract class LeaveRequest implements Approvable, Serializable {
         this.endDate = endDate;
         this.reason = reason;
         this.status = Status.PENDING;
-        recordStatusChange("CREATED", Status.PENDING.toString(), "System");
+    }
+
+    // Builds a request of the concrete class for {@code type}
+    public static LeaveRequest create(int requestId, Employee employee,
+            LocalDate startDate, LocalDate endDate, String reason,
+            LeaveType type, boolean hasMedicalCertificate) {
+        switch (type) {
+            case SICK:
+                return new SickLeaveRequest(requestId, employee,
+                        startDate, endDate, reason, hasMedicalCertificate);
+            case ANNUAL:
+                return new AnnualLeaveRequest(requestId, employee,
+                        startDate, endDate, reason);
+            case MATERNITY:
+                return new MaternityLeaveRequest(requestId, employee,
+                        startDate, endDate, reason);
+            case PATERNITY:
+                return new PaternityLeaveRequest(requestId, employee,
+                        startDate, endDate, reason);
+            case UNPAID:
+                return new UnpaidLeaveRequest(requestId, employee,
+                        startDate, endDate, reason);
+            default:
+                throw new IllegalArgumentException("Unsupported leave type");
+        }
     }
 
     public abstract LeaveType getLeaveType();
 
-    public abstract boolean isValid();
+    // Whether the request meets the policy for its employee's department and type
+    public boolean isValid() {
+        return getPolicy().allows(this);
+    }
+
+    // Why the request cannot be approved under its policy; empty if it can
+    public List<PolicyViolation> validate() {
+        return getPolicy().evaluate(this);
+    }
+
+    private LeavePolicy getPolicy() {
+        LeavePolicyEngine engine = policyEngine;
+        return (engine != null ? engine : LeavePolicyEngine.defaults())
+                .policyFor(employee.getDepartment(), getLeaveType());
+    }
+
+    void setPolicyEngine(LeavePolicyEngine policyEngine) {
+        this.policyEngine = policyEngine;
+    }
 
+    // Calendar days covered, inclusive of both ends
     public int getNumberOfDays() {
-        return (int) startDate.datesUntil(endDate.plusDays(1)).count();
+        return WorkingDayCalendar.countDays(startDate, endDate);
+    }
+
+    // Days charged against the balance under the employee's working-day calendar
+    public int getWorkingDays() {
+        return employee.getWorkingDayCalendar().countWorkingDays(startDate, endDate);
+    }
+
+    /**
+     * Days deducted from the balance when this request was approved, which
+     * is what a cancellation refunds. Approved requests loaded from data
+     * that did not record it report their working days instead; requests
+     * never approved report 0.
+     */
+    public int getDaysCharged() {
+        int days = daysCharged;
+        return days >= 0 ? days : status == Status.APPROVED ? getWorkingDays() : 0;
+    }
+
+    // Restores the amount recorded with a loaded request; -1 if unknown
+    void setDaysCharged(int days) {
+        this.daysCharged = days;
+    }
+
+    LeaveSnapshot.RequestVersion getVersion() {
+        return version;
+    }
+
+    // Records the current status as the version at sequence
+    void commitVersion(long sequence, long oldestVisible) {
+        LeaveSnapshot.RequestVersion next = new LeaveSnapshot.RequestVersion(sequence, this, version);
+        next.trim(oldestVisible);
+        version = next;
     }
 
     public Status getStatus() {
@@ -76,51 +160,234 @@ public abstract class LeaveRequest implements Approvable, Serializable {
                 getLeaveType(), startDate, endDate, getNumberOfDays(), status, reason);
     }
 
-    public class StatusChange {
-        private final String fromStatus;
-        private final String toStatus;
-        private final LocalDate changeDate;
+    /**
+     * One entry of a request's status history. {@code from} is null for the
+     * change that created the request, reported as "CREATED".
+     */
+    public static class StatusChange {
+        public static final String CREATED = "CREATED";
+
+        private final int requestId;
+        private final Status from;
+        private final Status to;
+        private final long timestampMillis;
         private final String changedBy;
 
-        public StatusChange(String fromStatus, String toStatus, String changedBy) {
-            this.fromStatus = fromStatus;
-            this.toStatus = toStatus;
-            this.changeDate = LocalDate.now();
+        StatusChange(int requestId, Status from, Status to, long timestampMillis, String changedBy) {
+            this.requestId = requestId;
+            this.from = from;
+            this.to = to;
+            this.timestampMillis = timestampMillis;
             this.changedBy = changedBy;
         }
 
+        public int getRequestId() {
+            return requestId;
+        }
+
+        public Status getFrom() {
+            return from;
+        }
+
+        public Status getTo() {
+            return to;
+        }
+
+        public String getFromStatus() {
+            return from == null ? CREATED : from.toString();
+        }
+
+        public String getToStatus() {
+            return to.toString();
+        }
+
+        public Instant getTimestamp() {
+            return Instant.ofEpochMilli(timestampMillis);
+        }
+
+        public LocalDate getChangeDate() {
+            return LocalDate.ofInstant(getTimestamp(), ZoneId.systemDefault());
+        }
+
+        public String getChangedBy() {
+            return changedBy;
+        }
+
         public String getChangeSummary() {
             return String.format("[%s] %s → %s by %s",
-                    changeDate, fromStatus, toStatus, changedBy);
+                    getChangeDate(), getFromStatus(), getToStatus(), changedBy);
         }
     }
 
+    /**
+     * Records a change under the status names used by StatusChange, e.g.
+     * ("CREATED", "PENDING", "System"). Throws IllegalArgumentException for
+     * unknown names.
+     */
     public void recordStatusChange(String fromStatus, String toStatus, String changedBy) {
-        statusHistory.add(new StatusChange(fromStatus, toStatus, changedBy));
+        recordStatusChange(StatusChange.CREATED.equals(fromStatus) ? null : Status.valueOf(fromStatus),
+                Status.valueOf(toStatus), changedBy);
+    }
+
+    void recordStatusChange(Status from, Status to, String changedBy) {
+        recordStatusChange(from, to, changedBy, System.currentTimeMillis());
+    }
+
+    // Records a change made at the given time, e.g. one replayed from the journal
+    void recordStatusChange(Status from, Status to, String changedBy, long timestampMillis) {
+        getHistoryLog().append(requestId, from, to, timestampMillis, changedBy);
+    }
+
+    // Day the request was created per its status history, or null if that was not logged
+    public LocalDate getCreatedDate() {
+        long created = getHistoryLog().createdAtMillis(requestId);
+        return created < 0 ? null : LocalDate.ofInstant(Instant.ofEpochMilli(created), ZoneId.systemDefault());
+    }
+
+    public List<StatusChange> getStatusHistory() {
+        return getHistoryLog().forRequest(requestId);
+    }
+
+    /**
+     * Requests outside a system keep their history in a log of their own,
+     * started with the creation entry the system would have recorded.
+     */
+    StatusHistoryLog getHistoryLog() {
+        StatusHistoryLog log = historyLog;
+        if (log == null) {
+            synchronized (this) {
+                if (historyLog == null) {
+                    StatusHistoryLog own = new StatusHistoryLog();
+                    own.append(requestId, null, Status.PENDING, System.currentTimeMillis(), "System");
+                    historyLog = own;
+                }
+                log = historyLog;
+            }
+        }
+        return log;
+    }
+
+    void setHistoryLog(StatusHistoryLog historyLog) {
+        this.historyLog = historyLog;
     }
 
     public void displayStatusHistory() {
         System.out.println("Status History for Request #" + requestId);
-        statusHistory.forEach(change -> System.out.println(change.getChangeSummary()));
+        getStatusHistory().forEach(change -> System.out.println(change.getChangeSummary()));
     }
 
+    /**
+     * Validates and approves this request. The balance check and deduction
+     * run under the employee's lock stripe, so concurrent approvals for the
+     * same employee cannot both spend the same days.
+     */
     @Override
     public boolean approve(String approver) {
-        if (!isValid()) {
-            return false;
+        return approve(approver, System.currentTimeMillis());
+    }
+
+    // Approves as of the given time, which the status history records
+    boolean approve(String approver, long timestampMillis) {
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employee.getEmployeeId());
+        lock.lock();
+        try {
+            if (status != Status.PENDING || !isValid()) {
+                return false;
+            }
+            applyApproval(approver, getWorkingDays(), true, timestampMillis);
+            return true;
+        } finally {
+            lock.unlock();
         }
-        recordStatusChange(status.toString(), Status.APPROVED.toString(), approver);
+    }
+
+    /**
+     * Applies an approval of the given days without re-validating, e.g.
+     * when replaying the journal. The balance is left alone unless charge
+     * is set, for replays whose deduction is already in the saved balance.
+     */
+    void applyApproval(String approver, int days, boolean charge, long timestampMillis) {
+        recordStatusChange(status, Status.APPROVED, approver, timestampMillis);
+        Status previous = status;
         status = Status.APPROVED;
-        employee.deductLeaveDays(getLeaveType(), getNumberOfDays());
+        daysCharged = days;
+        if (charge) {
+            employee.deductLeaveDays(getLeaveType(), days);
+        }
         employee.addLeaveRequest(this);
+        notifyStatusChange(previous);
+    }
+
+    private void notifyStatusChange(Status previous) {
+        LeaveEventListener listener = employee.getListener();
+        if (listener != null) {
+            listener.onStatusChange(this, previous, status);
+        }
+    }
+
+    /**
+     * Cancels a pending or approved request. The days charged on approval
+     * go back to the employee's balance, whatever the calendar says now, and
+     * are what getDaysCharged reports afterwards. Returns false if the
+     * request was already rejected or cancelled.
+     */
+    public boolean cancel(String cancelledBy) {
+        return cancel(cancelledBy, System.currentTimeMillis());
+    }
+
+    boolean cancel(String cancelledBy, long timestampMillis) {
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employee.getEmployeeId());
+        lock.lock();
+        try {
+            return applyCancel(cancelledBy, true, timestampMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels without taking the employee's lock stripe, e.g. when replaying
+     * the journal. The days charged are only refunded if refund is set.
+     */
+    boolean applyCancel(String cancelledBy, boolean refund, long timestampMillis) {
+        if (status != Status.PENDING && status != Status.APPROVED) {
+            return false;
+        }
+        recordStatusChange(status, Status.CANCELLED, cancelledBy, timestampMillis);
+        Status previous = status;
+        status = Status.CANCELLED;
+        if (previous == Status.APPROVED) {
+            int days = daysCharged >= 0 ? daysCharged : getWorkingDays();
+            daysCharged = days;
+            if (refund) {
+                employee.restoreLeaveDays(getLeaveType(), days);
+            }
+        }
+        employee.addLeaveRequest(this);
+        notifyStatusChange(previous);
         return true;
     }
 
     @Override
     public boolean deny(String approver, String reason) {
-        recordStatusChange(status.toString(), Status.REJECTED.toString(), approver);
-        status = Status.REJECTED;
-        employee.addLeaveRequest(this);
-        return true;
+        return deny(approver, reason, System.currentTimeMillis());
+    }
+
+    boolean deny(String approver, String reason, long timestampMillis) {
+        ReentrantLock lock = EmployeeLockStripes.lockFor(employee.getEmployeeId());
+        lock.lock();
+        try {
+            if (status != Status.PENDING) {
+                return false;
+            }
+            recordStatusChange(status, Status.REJECTED, approver, timestampMillis);
+            Status previous = status;
+            status = Status.REJECTED;
+            employee.addLeaveRequest(this);
+            notifyStatusChange(previous);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 }
\ No newline at end of file
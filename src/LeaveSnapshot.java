@@ -0,0 +1,251 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * A consistent, read-only view of employees, balances and requests as of
+ * one commit, for reports that run alongside approvals.
+ *
+ * Every employee and request keeps a chain of immutable versions, newest
+ * first, each stamped with the {@link CommitSequencer} sequence that made
+ * it. The snapshot reads the version at or below its own sequence, so an
+ * approval either shows up with both its status and its balance deduction
+ * or not at all, and objects created later are not seen. Reads take no
+ * locks. Close the snapshot when done so old versions can be dropped.
+ *
+ * Restores and binary loads replace the data outright; a snapshot open
+ * across one sees the new objects.
+ */
+public class LeaveSnapshot implements AutoCloseable {
+    private final CommitSequencer commits;
+    private final long sequence;
+    private final ConcurrentIntObjectMap<Employee> employees;
+    private final Map<Integer, LeaveRequest> requests;
+    private final LeaveHistoryIndex historyIndex;
+    private boolean closed;
+
+    LeaveSnapshot(CommitSequencer commits, ConcurrentIntObjectMap<Employee> employees, Map<Integer, LeaveRequest> requests,
+            LeaveHistoryIndex historyIndex) {
+        this.commits = commits;
+        this.sequence = commits.open();
+        this.employees = employees;
+        this.requests = requests;
+        this.historyIndex = historyIndex;
+    }
+
+    /** Common part of the version chains kept on employees and requests. */
+    abstract static class Version<V extends Version<V>> {
+        final long sequence;
+        volatile V previous;
+
+        Version(long sequence, V previous) {
+            this.sequence = sequence;
+            this.previous = previous;
+        }
+
+        // The newest version committed at or before sequence, or null if none
+        V at(long sequence) {
+            @SuppressWarnings("unchecked")
+            V version = (V) this;
+            while (version != null && version.sequence > sequence) {
+                version = version.previous;
+            }
+            return version;
+        }
+
+        // Unlinks the versions no reader at oldestVisible or later needs
+        void trim(long oldestVisible) {
+            V kept = at(oldestVisible);
+            if (kept != null) {
+                kept.previous = null;
+            }
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    /** An employee's department and balances as of one commit. */
+    public static final class EmployeeVersion extends Version<EmployeeVersion> {
+        private final Employee employee;
+        private final String department;
+        private final int annualLeaveBalance;
+        private final int sickLeaveBalance;
+
+        EmployeeVersion(long sequence, Employee employee, EmployeeVersion previous) {
+            super(sequence, previous);
+            this.employee = employee;
+            this.department = employee.getDepartment();
+            this.annualLeaveBalance = employee.getAnnualLeaveBalance();
+            this.sickLeaveBalance = employee.getSickLeaveBalance();
+        }
+
+        public int getEmployeeId() {
+            return employee.getEmployeeId();
+        }
+
+        public String getName() {
+            return employee.getName();
+        }
+
+        public String getDepartment() {
+            return department;
+        }
+
+        public int getAnnualLeaveBalance() {
+            return annualLeaveBalance;
+        }
+
+        public int getSickLeaveBalance() {
+            return sickLeaveBalance;
+        }
+    }
+
+    /** A request's status as of one commit; the other fields never change. */
+    public static final class RequestVersion extends Version<RequestVersion> {
+        private final LeaveRequest request;
+        private final LeaveRequest.Status status;
+
+        RequestVersion(long sequence, LeaveRequest request, RequestVersion previous) {
+            super(sequence, previous);
+            this.request = request;
+            this.status = request.getStatus();
+        }
+
+        public int getRequestId() {
+            return request.getRequestId();
+        }
+
+        public int getEmployeeId() {
+            return request.getEmployee().getEmployeeId();
+        }
+
+        public LocalDate getStartDate() {
+            return request.getStartDate();
+        }
+
+        public LocalDate getEndDate() {
+            return request.getEndDate();
+        }
+
+        public String getReason() {
+            return request.getReason();
+        }
+
+        public LeaveRequest.LeaveType getLeaveType() {
+            return request.getLeaveType();
+        }
+
+        public LeaveRequest.Status getStatus() {
+            return status;
+        }
+
+        public int getNumberOfDays() {
+            return request.getNumberOfDays();
+        }
+
+        public int getWorkingDays() {
+            return request.getWorkingDays();
+        }
+    }
+
+    // The commit this snapshot shows
+    public long getSequence() {
+        return sequence;
+    }
+
+    public EmployeeVersion getEmployee(int employeeId) {
+        Employee employee = employees.get(employeeId);
+        return employee == null ? null : versionOf(employee);
+    }
+
+    public RequestVersion getRequest(int requestId) {
+        LeaveRequest request = requests.get(requestId);
+        return request == null ? null : versionOf(request);
+    }
+
+    // Every employee as of the snapshot, in no particular order
+    public Stream<EmployeeVersion> employees() {
+        return employees.values().stream().map(this::versionOf).filter(Objects::nonNull);
+    }
+
+    // Every request as of the snapshot, in no particular order
+    public Stream<RequestVersion> requests() {
+        return requests.values().stream().map(this::versionOf).filter(Objects::nonNull);
+    }
+
+    // The employee's requests that were decided or cancelled as of the snapshot, oldest start first
+    public List<RequestVersion> getEmployeeLeaveHistory(int employeeId) {
+        // The index only grows, so it holds at least the snapshot's history
+        long[] keys = historyIndex.page(employeeId, null, null, Long.MAX_VALUE,
+                Math.max(1, historyIndex.count(employeeId)));
+        List<RequestVersion> history = new ArrayList<>(keys.length);
+        for (int i = keys.length - 1; i >= 0; i--) {
+            RequestVersion version = getRequest(LeaveHistoryIndex.requestId(keys[i]));
+            if (version != null && version.getStatus() != LeaveRequest.Status.PENDING) {
+                history.add(version);
+            }
+        }
+        return history;
+    }
+
+    // Request counts and days per department as of the snapshot, by department name
+    public List<DepartmentStats> getAllDepartmentStats() {
+        Map<String, long[][]> totals = new TreeMap<>();
+        requests().forEach(request -> {
+            EmployeeVersion employee = getEmployee(request.getEmployeeId());
+            String department = employee == null ? null : employee.getDepartment();
+            if (department == null)
+                return;
+            long[][] counters = totals.computeIfAbsent(department, LeaveSnapshot::newCounters);
+            int slot = DepartmentStats.slot(request.getStatus(), request.getLeaveType());
+            counters[0][slot]++;
+            counters[1][slot] += request.getNumberOfDays();
+        });
+        employees().forEach(employee -> {
+            if (employee.getDepartment() != null) {
+                totals.computeIfAbsent(employee.getDepartment(), LeaveSnapshot::newCounters);
+            }
+        });
+        List<DepartmentStats> result = new ArrayList<>(totals.size());
+        totals.forEach((department, counters) -> result.add(new DepartmentStats(department, counters[0], counters[1])));
+        return Collections.unmodifiableList(result);
+    }
+
+    // Counts and days per status and type slot
+    private static long[][] newCounters(String department) {
+        return new long[][] { new long[DepartmentStats.slotCount()], new long[DepartmentStats.slotCount()] };
+    }
+
+    public void displayDepartmentStats() {
+        System.out.println("\nDepartment Statistics (as of commit " + sequence + "):");
+        for (DepartmentStats stats : getAllDepartmentStats()) {
+            System.out.printf("%s: %d pending requests, %d approved days%n",
+                    stats.getDepartment(), stats.getPendingCount(), stats.getApprovedDays());
+        }
+    }
+
+    private EmployeeVersion versionOf(Employee employee) {
+        EmployeeVersion latest = employee.getVersion();
+        return latest == null ? null : latest.at(sequence);
+    }
+
+    private RequestVersion versionOf(LeaveRequest request) {
+        RequestVersion latest = request.getVersion();
+        return latest == null ? null : latest.at(sequence);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            commits.close(sequence);
+        }
+    }
+}
@@ -1,76 +1,249 @@
 import java.io.*;
 import java.nio.file.*;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
 public class LeaveTrackingSystem {
-    private final Map<Integer, Employee> employees = new HashMap<>();
-    private final Map<Integer, LeaveRequest> leaveRequests = new HashMap<>();
-    private final Queue<LeaveRequest> pendingApprovals = new LinkedList<>();
-    private final Set<String> departments = new HashSet<>();
-    private int nextRequestId = 1;
+    private final ConcurrentIntObjectMap<Employee> employees = new ConcurrentIntObjectMap<>();
+    private final Map<Integer, LeaveRequest> leaveRequests = new ConcurrentHashMap<>();
+    private final ApprovalScheduler pendingApprovals = new ApprovalScheduler();
+    private final Set<String> departments = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextRequestId = new AtomicInteger(1);
+
+    // Writers share the read side; compaction takes the write side so that no
+    // change lands between snapshotting the files and truncating the journal
+    private final ReadWriteLock persistenceLock = new ReentrantReadWriteLock();
 
     private static final String DATA_DIR = "leavetracker_data";
-    private static final String EMPLOYEES_FILE = DATA_DIR + "/employees.csv";
-    private static final String REQUESTS_FILE = DATA_DIR + "/leave_requests.csv";
-    private static final String BACKUP_DIR = DATA_DIR + "/backups";
+    private static final String EMPLOYEES_FILE = "employees.csv";
+    private static final String REQUESTS_FILE = "leave_requests.csv";
+    private static final String EMPLOYEES_HEADER = "ID,Name,Department,AnnualLeave,SickLeave,JournalSequence";
+    private static final String REQUESTS_HEADER = "RequestID,EmployeeID,StartDate,EndDate,Reason,Status,Type,MedicalCertificate,DaysCharged";
+    private static final String BACKUP_DIR = "backups";
+    private static final String JOURNAL_FILE = "leave_requests.journal";
+    private static final String STATUS_HISTORY_FILE = "status_history.log";
+    private static final String POLICIES_FILE = "leave_policies.conf";
+
+    // Employees and their requests are split over this many files each
+    private static final int SHARD_COUNT = 16;
+
+    // Journal records forced to disk together, the longest a record waits to
+    // be forced, and records kept before compacting
+    private static final int JOURNAL_SYNC_BATCH = 64;
+    private static final long JOURNAL_SYNC_DELAY_MILLIS = 20;
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 1000;
+
+    // Pending requests decided and committed together by processPendingRequests
+    private static final int DEFAULT_APPROVAL_BATCH_SIZE = 500;
+
+    private final Path dataDir;
+    private final ShardedStorage<Employee> employeeShards;
+    private final ShardedStorage<LeaveRequest> requestShards;
+    private final LeaveJournal journal;
+    private final BackupStore backupStore;
+    private final StatusHistoryLog statusHistory;
+    private final DepartmentStatsIndex departmentStats = new DepartmentStatsIndex();
+    private final LeaveIntervalIndex intervalIndex = new LeaveIntervalIndex();
+    private final LeaveHistoryIndex historyIndex = new LeaveHistoryIndex();
+    private final EmployeeSearchIndex searchIndex = new EmployeeSearchIndex();
+    private final LeavePolicyEngine policyEngine = new LeavePolicyEngine();
+    private final LeaveMetrics metrics = new LeaveMetrics();
+    private final CommitSequencer commits = new CommitSequencer();
+    private final LeaveEventBus eventBus = new LeaveEventBus(LeaveEventBus.DEFAULT_CAPACITY, metrics);
+    // Events raised while this thread holds locks, published once it has let go
+    private final ThreadLocal<LeaveEventBus.Batch> deferredEvents = ThreadLocal.withInitial(LeaveEventBus.Batch::new);
+    // Journal sequence written with employee rows: every record up to it is in their balances
+    private volatile long savedJournalSequence;
+    // Sequences read with the employee rows, consulted while the journal is replayed
+    private final Map<Integer, Long> loadedJournalSequences = new ConcurrentHashMap<>();
+
+    // Keeps the derived indexes in step with changes made to registered objects
+    private final LeaveEventListener indexListener = new LeaveEventListener() {
+        @Override
+        public void onStatusChange(LeaveRequest request, LeaveRequest.Status from, LeaveRequest.Status to) {
+            // Approvals and cancellations move the balance as well as the status
+            int employeeId = request.getEmployee().getEmployeeId();
+            requestShards.markDirty(employeeId);
+            employeeShards.markDirty(employeeId);
+            departmentStats.onStatusChange(request, from, to);
+            intervalIndex.onStatusChange(request, from, to);
+            if (to != LeaveRequest.Status.PENDING) {
+                historyIndex.add(request);
+            }
+            // Last, so a snapshot that sees the new status finds it in the history index
+            commits.commit((sequence, oldestVisible) -> {
+                request.commitVersion(sequence, oldestVisible);
+                request.getEmployee().commitVersion(sequence, oldestVisible);
+            });
+            publishStatusEvents(request, from, to);
+        }
+
+        @Override
+        public void onDepartmentChange(Employee employee, String fromDepartment, String toDepartment) {
+            employeeShards.markDirty(employee.getEmployeeId());
+            departments.add(toDepartment);
+            departmentStats.onDepartmentChange(employee, fromDepartment, toDepartment);
+            intervalIndex.onDepartmentChange(employee, fromDepartment, toDepartment);
+            pendingApprovals.onDepartmentChange(employee, fromDepartment, toDepartment);
+            searchIndex.onDepartmentChange(employee, fromDepartment, toDepartment);
+            commits.commit(employee::commitVersion);
+        }
+    };
+
+    private final WorkingDayCalendar workingDayCalendar;
 
     public LeaveTrackingSystem() {
+        this(WorkingDayCalendar.ALL_DAYS);
+    }
+
+    /**
+     * Creates a system that charges leave in working days of the given
+     * calendar, for every employee without a calendar of their own.
+     */
+    public LeaveTrackingSystem(WorkingDayCalendar workingDayCalendar) {
+        this(Paths.get(DATA_DIR), workingDayCalendar);
+    }
+
+    // Keeps all files under dataDir instead of ./leavetracker_data
+    public LeaveTrackingSystem(Path dataDir, WorkingDayCalendar workingDayCalendar) {
+        this.dataDir = dataDir;
+        this.workingDayCalendar = workingDayCalendar;
+        this.employeeShards = new ShardedStorage<>(dataDir, "employees", EMPLOYEES_HEADER, SHARD_COUNT,
+                Employee::getEmployeeId, emp -> toCsvLine(emp, savedJournalSequence));
+        this.requestShards = new ShardedStorage<>(dataDir, "leave_requests", REQUESTS_HEADER, SHARD_COUNT,
+                request -> request.getEmployee().getEmployeeId(), LeaveTrackingSystem::toCsvLine);
+        this.journal = new LeaveJournal(dataDir.resolve(JOURNAL_FILE), JOURNAL_SYNC_BATCH,
+                JOURNAL_SYNC_DELAY_MILLIS);
+        this.backupStore = new BackupStore(dataDir.resolve(BACKUP_DIR));
+        this.statusHistory = new StatusHistoryLog(dataDir.resolve(STATUS_HISTORY_FILE));
+        metrics.registerGauge("pendingApprovals", pendingApprovals::size);
+        metrics.registerGauge("employees", employees::size);
+        metrics.registerGauge("leaveRequests", leaveRequests::size);
+        metrics.registerGauge("journalRecords", journal::getRecordCount);
+        metrics.registerGauge("journalBytesWritten", journal::getBytesWritten);
+        metrics.registerGauge("openSnapshots", commits::getOpenSnapshotCount);
+        metrics.registerGauge("eventsPublished", eventBus::getPublishedCount);
+        metrics.registerGauge("eventBacklog", eventBus::getBacklog);
+        metrics.registerGauge("eventsDropped", eventBus::getDroppedCount);
+        metrics.registerMBean();
         initializeFileStructure();
+        reloadPolicies();
+        loadStatusHistory();
         loadEmployees();
         loadLeaveRequests();
+        replayJournal();
+        if (employeeShards.hasLegacyFile() || requestShards.hasLegacyFile()) {
+            // Finishes moving the unsharded files of an earlier version into shards
+            compactJournal();
+        }
     }
 
     private void initializeFileStructure() {
         try {
-            Files.createDirectories(Paths.get(DATA_DIR));
-            Files.createDirectories(Paths.get(BACKUP_DIR));
+            Files.createDirectories(dataDir);
+            Files.createDirectories(dataDir.resolve(BACKUP_DIR));
         } catch (IOException e) {
             System.err.println("Error creating directory structure: " + e.getMessage());
         }
     }
 
+    /**
+     * Re-reads leave_policies.conf from the data directory, or falls back to
+     * the built-in policies if there is none. Returns false and keeps the
+     * current policies if the file has errors.
+     */
+    public boolean reloadPolicies() {
+        Path path = dataDir.resolve(POLICIES_FILE);
+        try {
+            policyEngine.replaceWith(Files.exists(path) ? LeavePolicyEngine.load(path) : new LeavePolicyEngine());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error loading leave policies: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public LeavePolicyEngine getPolicyEngine() {
+        return policyEngine;
+    }
+
+    private void loadStatusHistory() {
+        try {
+            statusHistory.load();
+        } catch (IOException e) {
+            System.err.println("Error loading status history: " + e.getMessage());
+        }
+    }
+
     // Employee file operations
     private void loadEmployees() {
-        Path path = Paths.get(EMPLOYEES_FILE);
-        if (!Files.exists(path))
-            return;
-
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
-            reader.lines().skip(1).forEach(line -> {
-                String[] parts = line.split(",");
-                if (parts.length == 5) {
-                    int id = Integer.parseInt(parts[0]);
-                    String name = parts[1];
-                    String dept = parts[2];
-                    int annualLeave = Integer.parseInt(parts[3]);
-                    int sickLeave = Integer.parseInt(parts[4]);
-
-                    Employee emp = new Employee(id, name, dept, annualLeave, sickLeave);
-                    employees.put(id, emp);
-                    departments.add(dept);
+        long start = System.nanoTime();
+        try {
+            // Departments repeat on every row; keep one String per department
+            Map<String, String> departmentNames = new ConcurrentHashMap<>();
+            for (CsvLoader.EmployeeRecord row : employeeShards.readLegacy(CsvLoader::loadEmployees)) {
+                registerEmployee(toEmployee(row, departmentNames));
+                recordJournalSequence(row);
+                employeeShards.markDirty(row.employeeId);
+            }
+            // Shards hold disjoint employees, so each is registered on its own thread
+            employeeShards.readShards(CsvLoader::loadEmployees).parallelStream().forEach(rows -> {
+                for (CsvLoader.EmployeeRecord row : rows) {
+                    if (!employees.containsKey(row.employeeId)) {
+                        registerEmployee(toEmployee(row, departmentNames));
+                        recordJournalSequence(row);
+                    }
                 }
             });
+            // New records must number after every sequence the rows already include
+            loadedJournalSequences.values().forEach(journal::advanceSequence);
+            searchIndex.compact();
+            metrics.recordSince(LeaveMetrics.Operation.LOAD_EMPLOYEES, start);
         } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.LOAD_EMPLOYEES);
             System.err.println("Error loading employees: " + e.getMessage());
         }
     }
 
-    public void saveEmployees() {
-        Path path = Paths.get(EMPLOYEES_FILE);
-        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
-            writer.write("ID,Name,Department,AnnualLeave,SickLeave\n");
-            for (Employee emp : employees.values()) {
-                writer.write(String.format("%d,%s,%s,%d,%d\n",
-                        emp.getEmployeeId(),
-                        emp.getName(),
-                        emp.getDepartment(),
-                        emp.getAnnualLeaveBalance(),
-                        emp.getSickLeaveBalance()));
-            }
+    private void recordJournalSequence(CsvLoader.EmployeeRecord row) {
+        if (row.journalSequence > 0) {
+            loadedJournalSequences.put(row.employeeId, row.journalSequence);
+        }
+    }
+
+    // Whether the balance change journaled at sequence is missing from the loaded employee row
+    private boolean isUnsavedBalanceChange(Employee employee, long sequence) {
+        return sequence > loadedJournalSequences.getOrDefault(employee.getEmployeeId(), 0L);
+    }
+
+    private static Employee toEmployee(CsvLoader.EmployeeRecord row, Map<String, String> departmentNames) {
+        String dept = departmentNames.computeIfAbsent(row.department, d -> d);
+        return new Employee(row.employeeId, row.name, dept, row.annualLeave, row.sickLeave);
+    }
+
+    // Rewrites the shards with changed employees; only compaction may, see compactJournal
+    private void writeEmployeesFile() {
+        long start = System.nanoTime();
+        try {
+            metrics.addBytesWritten(employeeShards.save(employees.values()));
         } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.SAVE_EMPLOYEES);
             System.err.println("Error saving employees: " + e.getMessage());
+            return;
         }
+        metrics.recordSince(LeaveMetrics.Operation.SAVE_EMPLOYEES, start);
+    }
+
+    private static String toCsvLine(Employee emp, long journalSequence) {
+        return emp.getEmployeeId() + "," + emp.getName() + "," + emp.getDepartment() + ","
+                + emp.getAnnualLeaveBalance() + "," + emp.getSickLeaveBalance() + "," + journalSequence + "\n";
     }
 
     public Employee getEmployee(int employeeId) {
@@ -79,227 +252,1042 @@ public class LeaveTrackingSystem {
 
     // Leave Request file operations
     private void loadLeaveRequests() {
-        Path path = Paths.get(REQUESTS_FILE);
-        if (!Files.exists(path))
-            return;
-
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
-            reader.lines().skip(1).forEach(line -> {
-                String[] parts = line.split(",", -1);
-                if (parts.length >= 8) {
-                    int reqId = Integer.parseInt(parts[0]);
-                    int empId = Integer.parseInt(parts[1]);
-                    LocalDate start = LocalDate.parse(parts[2]);
-                    LocalDate end = LocalDate.parse(parts[3]);
-                    String reason = parts[4];
-                    LeaveRequest.Status status = LeaveRequest.Status.valueOf(parts[5]);
-                    LeaveRequest.LeaveType type = LeaveRequest.LeaveType.valueOf(parts[6]);
-                    boolean hasCert = Boolean.parseBoolean(parts[7]);
-
-                    Employee emp = employees.get(empId);
-                    if (emp != null) {
-                        LeaveRequest request;
-                        if (type == LeaveRequest.LeaveType.SICK) {
-                            request = new SickLeaveRequest(reqId, emp, start, end, reason, hasCert);
-                        } else if (type == LeaveRequest.LeaveType.ANNUAL) {
-                            request = new AnnualLeaveRequest(reqId, emp, start, end, reason);
-                        } else {
-                            return;
-                        }
-                        request.status = status;
-                        leaveRequests.put(reqId, request);
-                        if (status == LeaveRequest.Status.PENDING) {
-                            pendingApprovals.add(request);
-                        }
-                        nextRequestId = Math.max(nextRequestId, reqId + 1);
-                    }
+        long start = System.nanoTime();
+        try {
+            for (CsvLoader.RequestRecord row : requestShards.readLegacy(CsvLoader::loadRequests)) {
+                if (registerLoadedRequest(row)) {
+                    requestShards.markDirty(row.employeeId);
+                }
+            }
+            requestShards.readShards(CsvLoader::loadRequests).parallelStream().forEach(rows -> {
+                for (CsvLoader.RequestRecord row : rows) {
+                    registerLoadedRequest(row);
                 }
             });
+            metrics.recordSince(LeaveMetrics.Operation.LOAD_REQUESTS, start);
         } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.LOAD_REQUESTS);
             System.err.println("Error loading leave requests: " + e.getMessage());
         }
     }
 
-    public void saveLeaveRequests() {
-        Path path = Paths.get(REQUESTS_FILE);
-        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
-            writer.write("RequestID,EmployeeID,StartDate,EndDate,Reason,Status,Type,MedicalCertificate\n");
-            for (LeaveRequest req : leaveRequests.values()) {
-                writer.write(String.format("%d,%d,%s,%s,%s,%s,%s,%b\n",
-                        req.getRequestId(),
-                        req.getEmployee().getEmployeeId(),
-                        req.getStartDate(),
-                        req.getEndDate(),
-                        req.getReason(),
-                        req.getStatus(),
-                        req.getLeaveType(),
-                        (req instanceof SickLeaveRequest) ? ((SickLeaveRequest) req).hasMedicalCertificate() : false));
-            }
+    // Skips rows of unknown employees and requests loaded already
+    private boolean registerLoadedRequest(CsvLoader.RequestRecord row) {
+        Employee emp = employees.get(row.employeeId);
+        if (emp == null || leaveRequests.containsKey(row.requestId))
+            return false;
+
+        LeaveRequest request = LeaveRequest.create(row.requestId, emp, row.startDate,
+                row.endDate, row.reason, row.type, row.hasMedicalCertificate);
+        request.status = row.status;
+        request.setDaysCharged(row.daysCharged);
+        registerRequest(request);
+        nextRequestId.accumulateAndGet(row.requestId + 1, Math::max);
+        return true;
+    }
+
+    // Rewrites the shards with changed requests; only compaction may, see compactJournal
+    private void writeRequestsFile() {
+        long start = System.nanoTime();
+        try {
+            metrics.addBytesWritten(requestShards.save(leaveRequests.values()));
         } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.SAVE_REQUESTS);
             System.err.println("Error saving leave requests: " + e.getMessage());
+            return;
+        }
+        metrics.recordSince(LeaveMetrics.Operation.SAVE_REQUESTS, start);
+    }
+
+    private static String toCsvLine(LeaveRequest req) {
+        boolean hasCert = req instanceof SickLeaveRequest && ((SickLeaveRequest) req).hasMedicalCertificate();
+        return req.getRequestId() + "," + req.getEmployee().getEmployeeId() + ","
+                + req.getStartDate() + "," + req.getEndDate() + "," + req.getReason() + ","
+                + req.getStatus() + "," + req.getLeaveType() + "," + hasCert + "," + req.getDaysCharged() + "\n";
+    }
+
+    // Journal operations
+    private void replayJournal() {
+        // The history log may already hold changes the journal replays
+        statusHistory.setRecovering(true);
+        try {
+            journal.replay(this::applyJournalRecord);
+        } catch (IOException e) {
+            System.err.println("Error replaying journal: " + e.getMessage());
+        } finally {
+            statusHistory.setRecovering(false);
+            loadedJournalSequences.clear();
+        }
+    }
+
+    /**
+     * Applies one record if the loaded files do not have it yet. Statuses
+     * are applied by the request's loaded status, balance changes only when
+     * the record is newer than the employee row's journal sequence, so a
+     * record is never applied twice even if compaction saved some shards
+     * and not others.
+     */
+    private void applyJournalRecord(String[] parts) {
+        try {
+            LeaveJournal.Operation op = LeaveJournal.Operation.valueOf(parts[0]);
+            long sequence = Long.parseLong(parts[1]);
+            long timestamp = Long.parseLong(parts[2]);
+            int id = Integer.parseInt(parts[3]);
+            switch (op) {
+                case EMPLOYEE -> {
+                    Employee loaded = employees.get(id);
+                    if (parts.length < 8 || (loaded != null && !isUnsavedBalanceChange(loaded, sequence)))
+                        return;
+                    registerEmployee(new Employee(id, parts[4], parts[5],
+                            Integer.parseInt(parts[6]), Integer.parseInt(parts[7])));
+                    employeeShards.markDirty(id);
+                }
+                case CREATE -> {
+                    if (parts.length < 10 || leaveRequests.containsKey(id))
+                        return;
+                    Employee emp = employees.get(Integer.parseInt(parts[4]));
+                    if (emp == null)
+                        return;
+                    LeaveRequest request = LeaveRequest.create(id, emp,
+                            LocalDate.parse(parts[5]), LocalDate.parse(parts[6]), parts[7],
+                            LeaveRequest.LeaveType.valueOf(parts[8]), Boolean.parseBoolean(parts[9]));
+                    registerRequest(request);
+                    requestShards.markDirty(emp.getEmployeeId());
+                    request.recordStatusChange(null, LeaveRequest.Status.PENDING, "System", timestamp);
+                    nextRequestId.accumulateAndGet(id + 1, Math::max);
+                }
+                case APPROVE -> {
+                    LeaveRequest request = leaveRequests.get(id);
+                    if (request == null)
+                        return;
+                    int days = Integer.parseInt(parts[5]);
+                    boolean charge = isUnsavedBalanceChange(request.getEmployee(), sequence);
+                    if (request.getStatus() == LeaveRequest.Status.PENDING) {
+                        request.applyApproval(parts[4], days, charge, timestamp);
+                        dequeuePending(request);
+                    } else if (charge) {
+                        // The request was saved approved, its employee's balance was not
+                        replayBalanceChange(request, days);
+                    }
+                }
+                case DENY -> {
+                    LeaveRequest request = leaveRequests.get(id);
+                    if (request != null && request.getStatus() == LeaveRequest.Status.PENDING) {
+                        request.deny(parts[4], parts[5], timestamp);
+                        dequeuePending(request);
+                    }
+                }
+                case CANCEL -> {
+                    LeaveRequest request = leaveRequests.get(id);
+                    if (request == null)
+                        return;
+                    int refunded = Integer.parseInt(parts[5]);
+                    boolean refund = isUnsavedBalanceChange(request.getEmployee(), sequence);
+                    if (request.applyCancel(parts[4], refund, timestamp)) {
+                        dequeuePending(request);
+                    } else if (refund && refunded > 0) {
+                        replayBalanceChange(request, -refunded);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Skipping unreadable journal record: " + String.join(",", parts));
+        }
+    }
+
+    private void replayBalanceChange(LeaveRequest request, int daysCharged) {
+        Employee employee = request.getEmployee();
+        employee.deductLeaveDays(request.getLeaveType(), daysCharged);
+        employeeShards.markDirty(employee.getEmployeeId());
+        commits.commit(employee::commitVersion);
+    }
+
+    private void compactJournalIfNeeded() {
+        if (journal.getRecordCount() >= JOURNAL_COMPACTION_THRESHOLD) {
+            compactJournal();
+        }
+    }
+
+    /**
+     * Folds the journal into the snapshot files. Balances change on approval,
+     * so changed employee shards are rewritten along with the request shards.
+     * The journal is kept if any shard could not be saved. This is the only
+     * place the data files are written, so they never get ahead of the
+     * journal sequence stored with the employee rows.
+     */
+    public void compactJournal() {
+        persistenceLock.writeLock().lock();
+        long start = System.nanoTime();
+        try {
+            // Nothing is journaled while the write lock is held, so the rows hold every record so far
+            savedJournalSequence = journal.getLastSequence();
+            writeEmployeesFile();
+            writeRequestsFile();
+            if (!employeeShards.isClean() || !requestShards.isClean())
+                return;
+            employeeShards.deleteLegacyFile();
+            requestShards.deleteLegacyFile();
+            statusHistory.sync();
+            journal.truncate();
+            metrics.recordSince(LeaveMetrics.Operation.COMPACT, start);
+        } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.COMPACT);
+            System.err.println("Error truncating journal: " + e.getMessage());
+        } finally {
+            persistenceLock.writeLock().unlock();
         }
     }
 
+    // Compacts the journal, drains event subscribers and releases the journal, history file and metrics MBean
+    public void close() {
+        compactJournal();
+        eventBus.close();
+        try {
+            journal.close();
+            statusHistory.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+        metrics.close();
+    }
+
+    public LeaveMetrics getMetrics() {
+        return metrics;
+    }
+
     // Backup functionality
-    public void createBackup() {
-        LocalDate today = LocalDate.now();
-        String backupName = String.format("backup_%s.zip", today);
-        Path backupPath = Paths.get(BACKUP_DIR, backupName);
 
+    /**
+     * Backs up the current employees and requests, storing only the segments
+     * that changed since earlier backups. Returns the manifest name, or null
+     * if the backup failed.
+     */
+    public String createBackup() {
+        long start = System.nanoTime();
+        BackupStore.FileSnapshot employeeRows = new BackupStore.FileSnapshot(EMPLOYEES_FILE, EMPLOYEES_HEADER);
+        BackupStore.FileSnapshot requestRows = new BackupStore.FileSnapshot(REQUESTS_FILE, REQUESTS_HEADER);
+        // Rows are formatted and the name picked under the lock so balances and
+        // statuses agree; hashing, compression and I/O happen after it is released
+        String manifestName;
+        persistenceLock.writeLock().lock();
         try {
-            Files.copy(Paths.get(EMPLOYEES_FILE), backupPath.resolveSibling("employees_" + today + ".csv"));
-            Files.copy(Paths.get(REQUESTS_FILE), backupPath.resolveSibling("requests_" + today + ".csv"));
-            System.out.println("Backup created successfully");
+            manifestName = backupStore.reserveManifestName();
+            long journalSequence = journal.getLastSequence();
+            for (int id : sortedKeys(employees)) {
+                employeeRows.addRow(id, toCsvLine(employees.get(id), journalSequence));
+            }
+            for (int id : sortedKeys(leaveRequests)) {
+                requestRows.addRow(id, toCsvLine(leaveRequests.get(id)));
+            }
+        } finally {
+            persistenceLock.writeLock().unlock();
+        }
+
+        try {
+            BackupStore.Result result = backupStore.backup(manifestName, List.of(employeeRows, requestRows));
+            metrics.addBytesWritten(result.getBytesWritten());
+            metrics.recordSince(LeaveMetrics.Operation.BACKUP, start);
+            System.out.printf("Backup %s created successfully (%d of %d segments new)%n",
+                    result.getManifestName(), result.getNewSegmentCount(), result.getSegmentCount());
+            return result.getManifestName();
         } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.BACKUP);
             System.err.println("Error creating backup: " + e.getMessage());
+            return null;
         }
     }
 
-    // Existing methods with save calls added
+    private static int[] sortedKeys(Map<Integer, ?> map) {
+        return map.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    private static int[] sortedKeys(ConcurrentIntObjectMap<?> map) {
+        int[] keys = map.keys();
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    // Manifest names of all backups, oldest first
+    public List<String> listBackups() {
+        try {
+            return backupStore.listBackups();
+        } catch (IOException e) {
+            System.err.println("Error listing backups: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    // Restores the newest backup taken at or before the given time
+    public boolean restoreBackup(Instant pointInTime) {
+        try {
+            String manifestName = backupStore.findBackup(pointInTime);
+            if (manifestName == null) {
+                System.err.println("Error: No backup taken at or before " + pointInTime);
+                return false;
+            }
+            return restoreBackup(manifestName);
+        } catch (IOException e) {
+            System.err.println("Error finding backup: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the data files with those of the backup and reloads them.
+     * Changes made since the backup, including the journal, are discarded.
+     * The status history is an audit log and keeps every change.
+     */
+    public boolean restoreBackup(String manifestName) {
+        long start = System.nanoTime();
+        persistenceLock.writeLock().lock();
+        try {
+            // The backup comes back as unsharded files, which are split up again below
+            backupStore.restore(manifestName, dataDir);
+            employeeShards.deleteShards();
+            requestShards.deleteShards();
+            journal.truncate();
+            clearState();
+            loadEmployees();
+            loadedJournalSequences.clear();
+            loadLeaveRequests();
+            compactJournal();
+        } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.RESTORE);
+            System.err.println("Error restoring backup: " + e.getMessage());
+            return false;
+        } finally {
+            persistenceLock.writeLock().unlock();
+        }
+        metrics.recordSince(LeaveMetrics.Operation.RESTORE, start);
+        System.out.println("Restored backup " + manifestName);
+        return true;
+    }
+
+    /**
+     * Adds or replaces an employee and journals it; the employees file is
+     * rewritten when the journal is next compacted. Throws
+     * IllegalArgumentException if the name or department contains a comma
+     * or line break, and UncheckedIOException if it could not be journaled.
+     */
     public void addEmployee(Employee employee) {
+        requireStorable("Name", employee.getName());
+        requireStorable("Department", employee.getDepartment());
+        persistenceLock.readLock().lock();
+        try {
+            registerEmployee(employee);
+            employeeShards.markDirty(employee.getEmployeeId());
+            journal.appendEmployee(employee, System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Employee was not journaled", e);
+        } finally {
+            persistenceLock.readLock().unlock();
+        }
+        compactJournalIfNeeded();
+    }
+
+    /**
+     * Adds many employees, then folds the journal so they reach the
+     * employees file in one compaction instead of one record each. Writers
+     * are held off until then. Employees with a taken ID, a blank or
+     * unstorable name or department, or a negative balance are rejected;
+     * the rest are added.
+     */
+    public EmployeeImportResult importEmployees(Collection<Employee> newEmployees) {
+        long start = System.nanoTime();
+        EmployeeImportResult result = new EmployeeImportResult();
+        persistenceLock.writeLock().lock();
+        try {
+            for (Employee employee : newEmployees) {
+                String problem = validateImport(employee);
+                if (problem != null) {
+                    result.addRejection(employee.getEmployeeId(), problem);
+                } else {
+                    registerEmployee(employee);
+                    employeeShards.markDirty(employee.getEmployeeId());
+                    result.addImported();
+                }
+            }
+            if (result.getImportedCount() > 0) {
+                searchIndex.compact();
+                compactJournal();
+            }
+        } finally {
+            persistenceLock.writeLock().unlock();
+        }
+        metrics.recordSince(LeaveMetrics.Operation.IMPORT, start);
+        return result;
+    }
+
+    // Imports an employees CSV laid out like the data file; returns null if it cannot be read
+    public EmployeeImportResult importEmployees(Path csvFile) {
+        try {
+            Map<String, String> departmentNames = new HashMap<>();
+            List<Employee> rows = new ArrayList<>();
+            for (CsvLoader.EmployeeRecord row : CsvLoader.loadEmployees(csvFile)) {
+                String dept = departmentNames.computeIfAbsent(row.department, d -> d);
+                rows.add(new Employee(row.employeeId, row.name, dept, row.annualLeave, row.sickLeave));
+            }
+            return importEmployees(rows);
+        } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.IMPORT);
+            System.err.println("Error importing employees: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String validateImport(Employee employee) {
+        if (employee.getEmployeeId() <= 0)
+            return "Employee ID must be positive";
+        if (employees.containsKey(employee.getEmployeeId()))
+            return "Employee ID already exists";
+        if (!isStorableText(employee.getName()))
+            return "Name is blank or contains a comma or line break";
+        if (!isStorableText(employee.getDepartment()))
+            return "Department is blank or contains a comma or line break";
+        if (employee.getAnnualLeaveBalance() < 0 || employee.getSickLeaveBalance() < 0)
+            return "Leave balances must not be negative";
+        return null;
+    }
+
+    private static boolean isStorableText(String value) {
+        return value != null && !value.isBlank() && !hasSeparator(value);
+    }
+
+    private static boolean hasSeparator(String value) {
+        return value.indexOf(',') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+    }
+
+    // Journal records and data files are comma-separated lines, so free text may hold neither
+    private static void requireStorable(String field, String value) {
+        if (value != null && hasSeparator(value)) {
+            throw new IllegalArgumentException(field + " must not contain commas or line breaks");
+        }
+    }
+
+    /**
+     * Applies the year-end policies to every employee's balances in parallel,
+     * then folds the journal so the new balances replace the employees file
+     * atomically. Writers are held off until the new year is on disk.
+     */
+    public BalanceRollover.Result rollOverBalances(RolloverPolicy annualPolicy, RolloverPolicy sickPolicy) {
+        LeaveEventBus.Batch events = deferEvents();
+        persistenceLock.writeLock().lock();
+        long start = System.nanoTime();
+        try {
+            Employee[] all = employees.values().toArray(new Employee[0]);
+            BalanceRollover.Result result = new BalanceRollover(annualPolicy, sickPolicy).run(all);
+            employeeShards.markAllDirty();
+            // One commit, so a snapshot sees either the old year or the new one
+            commits.commit((sequence, oldestVisible) -> {
+                for (Employee employee : all) {
+                    employee.commitVersion(sequence, oldestVisible);
+                }
+            });
+            if (events != null) {
+                for (Employee employee : all) {
+                    raiseEvent(LeaveEvent.Type.BALANCE_CHANGED, employee, null, null, null);
+                }
+            }
+            compactJournal();
+            metrics.recordSince(LeaveMetrics.Operation.ROLLOVER, start);
+            System.out.printf("Rolled over %d employees: %d days carried, %d forfeited, %d accrued%n",
+                    result.getEmployeeCount(), result.getDaysCarried(), result.getDaysForfeited(),
+                    result.getDaysAccrued());
+            return result;
+        } finally {
+            persistenceLock.writeLock().unlock();
+            publishDeferredEvents(events);
+        }
+    }
+
+    private void registerEmployee(Employee employee) {
         employees.put(employee.getEmployeeId(), employee);
-        departments.add(employee.getDepartment());
-        saveEmployees();
+        if (employee.getDepartment() != null) {
+            departments.add(employee.getDepartment());
+        }
+        employee.setListener(indexListener);
+        searchIndex.add(employee);
+        if (!employee.hasWorkingDayCalendar()) {
+            employee.setWorkingDayCalendar(workingDayCalendar);
+        }
+        commits.commit(employee::commitVersion);
     }
 
+    // Adds a request to the maps and indexes, queueing it if still pending
+    private void registerRequest(LeaveRequest request) {
+        request.setHistoryLog(statusHistory);
+        request.setPolicyEngine(policyEngine);
+        leaveRequests.put(request.getRequestId(), request);
+        departmentStats.add(request);
+        intervalIndex.add(request);
+        if (request.getStatus() == LeaveRequest.Status.PENDING) {
+            pendingApprovals.add(request);
+        } else {
+            historyIndex.add(request);
+            request.getEmployee().addLeaveRequest(request);
+        }
+        commits.commit(request::commitVersion);
+    }
+
+    /**
+     * Creates a pending leave request. Throws OverlappingLeaveException if
+     * the dates overlap another pending or approved request of the same
+     * employee, and IllegalArgumentException if the end date is before the
+     * start date or the reason contains a comma or line break.
+     *
+     * Throws UncheckedIOException if the request could not be journaled, as
+     * do the other changes. The change is then kept in memory, reaches the
+     * data files only with the next successful compaction, and is lost if
+     * the process dies first.
+     */
     public LeaveRequest createLeaveRequest(Employee employee, LocalDate startDate,
             LocalDate endDate, String reason, LeaveRequest.LeaveType type,
             boolean hasMedicalCertificate) {
-        LeaveRequest request;
-        switch (type) {
-            case SICK:
-                request = new SickLeaveRequest(nextRequestId++, employee,
-                        startDate, endDate, reason, hasMedicalCertificate);
-                break;
-            case ANNUAL:
-                request = new AnnualLeaveRequest(nextRequestId++, employee,
-                        startDate, endDate, reason);
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported leave type");
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("End date is before start date");
         }
+        requireStorable("Reason", reason);
 
-        leaveRequests.put(request.getRequestId(), request);
-        pendingApprovals.add(request);
-        saveLeaveRequests();
+        long start = System.nanoTime();
+        LeaveRequest request = null;
+        ReentrantLock employeeLock = EmployeeLockStripes.lockFor(employee.getEmployeeId());
+        LeaveEventBus.Batch events = deferEvents();
+        persistenceLock.readLock().lock();
+        employeeLock.lock();
+        try {
+            List<LeaveRequest> overlapping = intervalIndex.findOverlapping(
+                    employee.getEmployeeId(), startDate, endDate);
+            if (!overlapping.isEmpty()) {
+                throw new OverlappingLeaveException(overlapping.get(0).getRequestId());
+            }
+
+            request = LeaveRequest.create(nextRequestId.getAndIncrement(), employee,
+                    startDate, endDate, reason, type, hasMedicalCertificate);
+            registerRequest(request);
+            requestShards.markDirty(employee.getEmployeeId());
+            long now = System.currentTimeMillis();
+            request.recordStatusChange(null, LeaveRequest.Status.PENDING, "System", now);
+            journal.appendCreate(request, now);
+            statusHistory.flush();
+            raiseEvent(LeaveEvent.Type.CREATED, employee, request, null, LeaveRequest.Status.PENDING);
+            metrics.recordSince(LeaveMetrics.Operation.CREATE, start);
+        } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.CREATE);
+            throw new UncheckedIOException("Leave request was not journaled", e);
+        } finally {
+            employeeLock.unlock();
+            persistenceLock.readLock().unlock();
+            publishDeferredEvents(events);
+        }
+        compactJournalIfNeeded();
         return request;
     }
 
-    public void processPendingRequests(String approver) {
-        while (!pendingApprovals.isEmpty()) {
-            LeaveRequest request = pendingApprovals.poll();
-            if (request.isValid()) {
-                request.approve(approver);
-            } else {
-                request.deny(approver, "Invalid request");
+    public LeaveRequest getLeaveRequest(int requestId) {
+        return leaveRequests.get(requestId);
+    }
+
+    /**
+     * Approves one request. Returns false if it is unknown, no longer
+     * pending, or fails validation. Throws IllegalArgumentException if the
+     * approver contains a comma or line break, and UncheckedIOException if
+     * the approval could not be journaled.
+     */
+    public boolean approveRequest(int requestId, String approver) {
+        requireStorable("Approver", approver);
+        LeaveRequest request = leaveRequests.get(requestId);
+        if (request == null)
+            return false;
+
+        long start = System.nanoTime();
+        LeaveEventBus.Batch events = deferEvents();
+        persistenceLock.readLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (!request.approve(approver, now))
+                return false;
+            dequeuePending(request);
+            journal.appendApprove(requestId, approver, request.getDaysCharged(), now);
+            statusHistory.flush();
+            metrics.recordSince(LeaveMetrics.Operation.APPROVE, start);
+        } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.APPROVE);
+            throw new UncheckedIOException("Approval was not journaled", e);
+        } finally {
+            persistenceLock.readLock().unlock();
+            publishDeferredEvents(events);
+        }
+        compactJournalIfNeeded();
+        return true;
+    }
+
+    // Denies one request. Returns false if it is unknown or no longer pending.
+    public boolean denyRequest(int requestId, String approver, String reason) {
+        requireStorable("Approver", approver);
+        requireStorable("Reason", reason);
+        LeaveRequest request = leaveRequests.get(requestId);
+        if (request == null)
+            return false;
+
+        long start = System.nanoTime();
+        LeaveEventBus.Batch events = deferEvents();
+        persistenceLock.readLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (!request.deny(approver, reason, now))
+                return false;
+            dequeuePending(request);
+            journal.appendDeny(requestId, approver, reason, now);
+            statusHistory.flush();
+            metrics.recordSince(LeaveMetrics.Operation.DENY, start);
+        } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.DENY);
+            throw new UncheckedIOException("Denial was not journaled", e);
+        } finally {
+            persistenceLock.readLock().unlock();
+            publishDeferredEvents(events);
+        }
+        compactJournalIfNeeded();
+        return true;
+    }
+
+    private void dequeuePending(LeaveRequest request) {
+        pendingApprovals.remove(request.getRequestId());
+    }
+
+    /**
+     * Cancels a pending or approved request, returning approved days to the
+     * employee. Returns false if it is unknown, rejected or already cancelled.
+     */
+    public boolean cancelLeaveRequest(int requestId, String cancelledBy) {
+        requireStorable("Cancelled by", cancelledBy);
+        LeaveRequest request = leaveRequests.get(requestId);
+        if (request == null)
+            return false;
+
+        long start = System.nanoTime();
+        LeaveEventBus.Batch events = deferEvents();
+        persistenceLock.readLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (!request.cancel(cancelledBy, now))
+                return false;
+            dequeuePending(request);
+            journal.appendCancel(requestId, cancelledBy, request.getDaysCharged(), now);
+            statusHistory.flush();
+            metrics.recordSince(LeaveMetrics.Operation.CANCEL, start);
+        } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.CANCEL);
+            throw new UncheckedIOException("Cancellation was not journaled", e);
+        } finally {
+            persistenceLock.readLock().unlock();
+            publishDeferredEvents(events);
+        }
+        compactJournalIfNeeded();
+        return true;
+    }
+
+    /**
+     * Limits the requests processPendingRequests hands this approver to the
+     * given departments, so approvers can drain their own queues in parallel.
+     * Passing no departments lets the approver take any request again.
+     */
+    public void assignApprover(String approver, String... departments) {
+        pendingApprovals.assignApprover(approver, Arrays.asList(departments));
+    }
+
+    public List<ApprovalBatchResult> processPendingRequests(String approver) {
+        return processPendingRequests(approver, DEFAULT_APPROVAL_BATCH_SIZE);
+    }
+
+    /**
+     * Drains the pending requests open to this approver in chunks of
+     * {@code batchSize}, most urgent first (see ApprovalScheduler). Each
+     * request is validated once and its balance deducted, then the whole
+     * batch is committed to the journal with a single write. Several threads
+     * may call this at once; each polled request is decided by exactly one
+     * of them.
+     */
+    public List<ApprovalBatchResult> processPendingRequests(String approver, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        requireStorable("Approver", approver);
+
+        List<ApprovalBatchResult> results = new ArrayList<>();
+        boolean drained = false;
+        while (!drained) {
+            ApprovalBatchResult batch = new ApprovalBatchResult(results.size() + 1);
+            LeaveEventBus.Batch events = deferEvents();
+            persistenceLock.readLock().lock();
+            try {
+                while (batch.size() < batchSize) {
+                    LeaveRequest request = pendingApprovals.pollFor(approver);
+                    if (request == null) {
+                        drained = true;
+                        break;
+                    }
+                    int employeeId = request.getEmployee().getEmployeeId();
+                    long start = System.nanoTime();
+                    long now = System.currentTimeMillis();
+                    if (request.approve(approver, now)) {
+                        metrics.recordSince(LeaveMetrics.Operation.APPROVE, start);
+                        batch.addDecision(new ApprovalBatchResult.Decision(request.getRequestId(), employeeId,
+                                true, "Approved", request.getDaysCharged(), now));
+                    } else {
+                        String reason = denialReason(request);
+                        if (request.deny(approver, reason, now)) {
+                            metrics.recordSince(LeaveMetrics.Operation.DENY, start);
+                            batch.addDecision(new ApprovalBatchResult.Decision(request.getRequestId(), employeeId,
+                                    false, reason, 0, now));
+                        }
+                    }
+                }
+                long start = System.nanoTime();
+                journal.appendDecisions(batch, approver);
+                statusHistory.flush();
+                metrics.recordSince(LeaveMetrics.Operation.JOURNAL_COMMIT, start);
+            } catch (IOException e) {
+                metrics.recordError(LeaveMetrics.Operation.JOURNAL_COMMIT);
+                throw new UncheckedIOException("Approval batch was not journaled", e);
+            } finally {
+                persistenceLock.readLock().unlock();
+                publishDeferredEvents(events);
+            }
+            if (batch.size() > 0) {
+                results.add(batch);
             }
-            saveLeaveRequests();
+            compactJournalIfNeeded();
         }
+        return results;
+    }
+
+    // Policy violations of the request joined into one denial reason
+    private static String denialReason(LeaveRequest request) {
+        List<PolicyViolation> violations = request.validate();
+        if (violations.isEmpty())
+            return "Invalid request";
+        StringJoiner reason = new StringJoiner("; ");
+        violations.forEach(v -> reason.add(v.getMessage()));
+        return reason.toString();
     }
 
+    // Status changes made by the approver in [from, to), oldest first
+    public List<LeaveRequest.StatusChange> findStatusChangesByApprover(String approver, Instant from, Instant to) {
+        return statusHistory.findByApprover(approver, from, to);
+    }
+
+    // Every decided or cancelled request of the employee, oldest start first
     public List<LeaveRequest> getEmployeeLeaveHistory(int employeeId) {
+        List<LeaveRequest> history = getEmployeeLeaveHistory(employeeId, null, null,
+                Math.max(1, historyIndex.count(employeeId)), null).getRequests();
+        Collections.reverse(history);
+        return history;
+    }
+
+    /**
+     * One page of the employee's decided and cancelled requests starting
+     * within [from, to], newest start first. Null bounds are open; pass null
+     * as the cursor for the first page and the returned cursor for the next.
+     * An unbounded first page that fits is served from the employee's cache
+     * of recent requests. Pages are resolved from the resident request map,
+     * not read from disk; see LeaveHistoryIndex.
+     */
+    public LeaveHistoryPage getEmployeeLeaveHistory(int employeeId, LocalDate from, LocalDate to,
+            int pageSize, String cursor) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
         Employee employee = employees.get(employeeId);
-        return employee != null ? employee.getLeaveHistory() : Collections.emptyList();
+        if (employee == null)
+            return new LeaveHistoryPage(new ArrayList<>(), null);
+
+        if (cursor == null && from == null && to == null) {
+            List<LeaveRequest> recent = employee.getLeaveHistory();
+            int total = historyIndex.count(employeeId);
+            if (pageSize <= recent.size() || recent.size() == total) {
+                List<LeaveRequest> page = new ArrayList<>(Math.min(pageSize, recent.size()));
+                for (int i = recent.size() - 1; i >= 0 && page.size() < pageSize; i--) {
+                    page.add(recent.get(i));
+                }
+                boolean more = total > page.size();
+                return new LeaveHistoryPage(page, more && !page.isEmpty()
+                        ? Long.toString(LeaveHistoryIndex.key(page.get(page.size() - 1)), 36) : null);
+            }
+        }
+
+        long afterKey = Long.MAX_VALUE;
+        if (cursor != null) {
+            try {
+                afterKey = Long.parseLong(cursor, 36);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid history cursor");
+            }
+        }
+        // One extra key tells whether another page follows
+        long[] keys = historyIndex.page(employeeId, from, to, afterKey, pageSize + 1);
+        List<LeaveRequest> page = new ArrayList<>(Math.min(pageSize, keys.length));
+        for (int i = 0; i < keys.length && page.size() < pageSize; i++) {
+            LeaveRequest request = leaveRequests.get(LeaveHistoryIndex.requestId(keys[i]));
+            if (request != null) {
+                page.add(request);
+            }
+        }
+        String next = keys.length > pageSize ? Long.toString(keys[pageSize - 1], 36) : null;
+        return new LeaveHistoryPage(page, next);
+    }
+
+    // Pending or approved requests of the employee sharing a day with [from, to]
+    public List<LeaveRequest> findOverlappingRequests(int employeeId, LocalDate from, LocalDate to) {
+        return intervalIndex.findOverlapping(employeeId, from, to);
+    }
+
+    public List<LeaveRequest> getDepartmentRequestsBetween(String department, LocalDate from, LocalDate to) {
+        return intervalIndex.findInDepartment(department, from, to);
+    }
+
+    public List<Employee> getEmployeesOnLeave(String department, LocalDate day) {
+        return intervalIndex.findEmployeesOnLeave(department, day);
+    }
+
+    /**
+     * One page of employees whose name matches every word of query, e.g.
+     * "jo sm" for John Smith, best match first. Case and accents are
+     * ignored; words under three letters match the start of a name word,
+     * longer ones anywhere. A non-null department restricts the results.
+     * Pass null as the cursor for the first page and the returned cursor
+     * for the next.
+     */
+    public EmployeeSearchPage searchEmployees(String query, String department, int pageSize, String cursor) {
+        return searchIndex.search(query, department, pageSize, cursor);
+    }
+
+    // Employees currently in the department, by name
+    public List<Employee> getEmployeesInDepartment(String department) {
+        return searchIndex.inDepartment(department);
+    }
+
+    public DepartmentStats getDepartmentStats(String department) {
+        return departmentStats.getStats(department);
+    }
+
+    public List<DepartmentStats> getAllDepartmentStats() {
+        List<DepartmentStats> result = new ArrayList<>();
+        for (String dept : new TreeSet<>(departments)) {
+            result.add(departmentStats.getStats(dept));
+        }
+        return result;
     }
 
     public void displayDepartmentStats() {
         System.out.println("\nDepartment Statistics:");
-        for (String dept : departments) {
-            long pending = leaveRequests.values().stream()
-                    .filter(r -> r.getEmployee().getDepartment().equals(dept))
-                    .filter(r -> r.getStatus() == LeaveRequest.Status.PENDING)
-                    .count();
-            System.out.printf("%s: %d pending requests%n", dept, pending);
+        for (DepartmentStats stats : getAllDepartmentStats()) {
+            System.out.printf("%s: %d pending requests, %d approved days%n",
+                    stats.getDepartment(), stats.getPendingCount(), stats.getApprovedDays());
         }
     }
 
-    public void saveToBinaryFile(String filename) {
-        Path path = Paths.get(DATA_DIR, filename);
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                Files.newOutputStream(path))) {
+    /**
+     * Lifecycle events of requests and balances, for notifications, audit
+     * feeds and the like; see {@link LeaveEventBus#subscribe}. Events raised
+     * while loading, replaying the journal or restoring are not published.
+     */
+    public LeaveEventBus getEventBus() {
+        return eventBus;
+    }
+
+    // Publishes a decision or cancellation and, if it moved a balance, the new balances
+    private void publishStatusEvents(LeaveRequest request, LeaveRequest.Status from, LeaveRequest.Status to) {
+        if (!eventBus.hasSubscribers())
+            return;
+        LeaveEvent.Type type = switch (to) {
+            case APPROVED -> LeaveEvent.Type.APPROVED;
+            case REJECTED -> LeaveEvent.Type.DENIED;
+            case CANCELLED -> LeaveEvent.Type.CANCELLED;
+            case PENDING -> null;
+        };
+        if (type == null)
+            return;
+        Employee employee = request.getEmployee();
+        raiseEvent(type, employee, request, from, to);
+        LeaveRequest.LeaveType leaveType = request.getLeaveType();
+        boolean drawsBalance = leaveType == LeaveRequest.LeaveType.ANNUAL || leaveType == LeaveRequest.LeaveType.SICK;
+        if (drawsBalance && request.getDaysCharged() != 0
+                && (to == LeaveRequest.Status.APPROVED || from == LeaveRequest.Status.APPROVED)) {
+            raiseEvent(LeaveEvent.Type.BALANCE_CHANGED, employee, request, from, to);
+        }
+    }
+
+    /**
+     * Starts collecting the events this thread raises, so they can be
+     * published after its locks are released. Returns null if there are no
+     * subscribers or an outer call is already collecting.
+     */
+    private LeaveEventBus.Batch deferEvents() {
+        if (!eventBus.hasSubscribers())
+            return null;
+        LeaveEventBus.Batch events = deferredEvents.get();
+        if (events.isOpen())
+            return null;
+        events.open();
+        return events;
+    }
+
+    // Call with every lock released
+    private void publishDeferredEvents(LeaveEventBus.Batch events) {
+        if (events != null) {
+            eventBus.publish(events);
+        }
+    }
+
+    /**
+     * Captures the event as of now into this thread's reused batch. It is
+     * published when the enclosing system call releases its locks, or at
+     * once for changes made through LeaveRequest directly.
+     */
+    private void raiseEvent(LeaveEvent.Type type, Employee employee, LeaveRequest request,
+            LeaveRequest.Status from, LeaveRequest.Status to) {
+        LeaveEventBus.Batch events = deferredEvents.get();
+        if (events.isOpen()) {
+            events.add(type, employee, request, from, to);
+        } else {
+            eventBus.publish(type, employee, request, from, to);
+        }
+    }
+
+    /**
+     * Opens a consistent view of employees, balances and requests as of the
+     * last committed change. Reading it never blocks or is blocked by
+     * approvals; close it when done so superseded versions can be dropped.
+     */
+    public LeaveSnapshot openSnapshot() {
+        return new LeaveSnapshot(commits, employees, leaveRequests, historyIndex);
+    }
+
+    // Lazily filtered view over the live requests; nothing is copied
+    public Stream<LeaveRequest> streamLeaveRequests(LeaveExportFilter filter) {
+        return leaveRequests.values().stream().filter(filter::matches);
+    }
+
+    // Working days per employee, month and type over the matching requests, in one pass
+    public LeaveAggregates aggregateLeave(LeaveExportFilter filter) {
+        LeaveAggregates aggregates = new LeaveAggregates(filter);
+        for (LeaveRequest request : leaveRequests.values()) {
+            aggregates.accept(request);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Streams the matching requests to target, resolved against the data
+     * directory, and fills aggregates in the same pass unless it is null.
+     * Returns the number of rows written, or -1 if the export failed.
+     */
+    public long exportLeaveRequests(Path target, LeaveExporter.Format format, LeaveExportFilter filter,
+            LeaveAggregates aggregates) {
+        Path path = dataDir.resolve(target);
+        long start = System.nanoTime();
+        try {
+            long rows = LeaveExporter.export(leaveRequests.values(), filter, path, format, aggregates);
+            metrics.addBytesWritten(Files.size(path));
+            metrics.recordSince(LeaveMetrics.Operation.EXPORT, start);
+            return rows;
+        } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.EXPORT);
+            System.err.println("Error exporting leave requests: " + e.getMessage());
+            return -1;
+        }
+    }
 
-            oos.writeObject(new ArrayList<>(employees.values()));
-            oos.writeObject(new ArrayList<>(leaveRequests.values()));
-            oos.writeInt(nextRequestId);
+    public void saveToBinaryFile(String filename) {
+        Path path = dataDir.resolve(filename);
+        // Block writers briefly so balances and statuses are captured together
+        persistenceLock.writeLock().lock();
+        long start = System.nanoTime();
+        try {
+            long bytes = BinarySnapshot.write(path, employees.values(), leaveRequests.values(),
+                    statusHistory, nextRequestId.get());
+            metrics.addBytesWritten(bytes);
+            metrics.recordSince(LeaveMetrics.Operation.BINARY_SAVE, start);
             System.out.println("Data saved to binary file successfully");
         } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.BINARY_SAVE);
             System.err.println("Error saving binary data: " + e.getMessage());
+        } finally {
+            persistenceLock.writeLock().unlock();
         }
     }
 
-    @SuppressWarnings("unchecked")
     public void loadFromBinaryFile(String filename) {
         if (filename == null || filename.trim().isEmpty()) {
             System.err.println("Error: Filename cannot be null or empty");
             return;
         }
 
-        Path path = Paths.get(DATA_DIR, filename);
+        Path path = dataDir.resolve(filename);
         if (!Files.exists(path)) {
             System.err.println("Error: File " + path + " does not exist");
             return;
         }
 
-        try (ObjectInputStream ois = new ObjectInputStream(
-                Files.newInputStream(path))) {
-
-            // Read data from file
-            Object empData = ois.readObject();
-            Object reqData = ois.readObject();
-            Object idData = ois.readObject();
+        long start = System.nanoTime();
+        BinarySnapshot snapshot;
+        try {
+            snapshot = BinarySnapshot.read(path);
+        } catch (IOException e) {
+            metrics.recordError(LeaveMetrics.Operation.BINARY_LOAD);
+            System.err.println("Error loading binary data: " + e.getMessage());
+            return;
+        }
 
-            // Validate loaded data types
-            if (!(empData instanceof List) || !(reqData instanceof List) || !(idData instanceof Integer)) {
-                System.err.println("Error: Invalid data format in binary file");
-                return;
+        persistenceLock.writeLock().lock();
+        try {
+            clearState();
+            nextRequestId.accumulateAndGet(snapshot.getNextRequestId(), Math::max);
+            // The status history is an audit log: merge the snapshot's changes, drop none
+            try {
+                statusHistory.appendMissing(snapshot.getStatusHistory());
+            } catch (IOException e) {
+                System.err.println("Error writing status history: " + e.getMessage());
             }
 
-            List<Employee> empList = (List<Employee>) empData;
-            List<LeaveRequest> reqList = (List<LeaveRequest>) reqData;
-            nextRequestId = (Integer) idData;
-
-            // Clear current data
-            employees.clear();
-            leaveRequests.clear();
-            pendingApprovals.clear();
-            departments.clear();
-
-            // Load employees with validation
-            for (Employee emp : empList) {
-                if (emp != null) {
-                    employees.put(emp.getEmployeeId(), emp);
-                    if (emp.getDepartment() != null) {
-                        departments.add(emp.getDepartment());
-                    }
-                }
+            for (Employee emp : snapshot.getEmployees()) {
+                registerEmployee(emp);
             }
 
-            // Load leave requests with validation
-            for (LeaveRequest req : reqList) {
-                if (req != null && employees.containsKey(req.getEmployee().getEmployeeId())) {
-                    leaveRequests.put(req.getRequestId(), req);
-                    if (req.getStatus() == LeaveRequest.Status.PENDING) {
-                        pendingApprovals.add(req);
-                    }
-                    nextRequestId = Math.max(nextRequestId, req.getRequestId() + 1);
-                }
+            for (LeaveRequest req : snapshot.getRequests()) {
+                registerRequest(req);
+                nextRequestId.accumulateAndGet(req.getRequestId() + 1, Math::max);
             }
+            searchIndex.compact();
+            // Saved in full by the next compaction
+            employeeShards.markAllDirty();
+            requestShards.markAllDirty();
+        } finally {
+            persistenceLock.writeLock().unlock();
+        }
+        metrics.recordSince(LeaveMetrics.Operation.BINARY_LOAD, start);
 
-            System.out.println("Data loaded successfully from " + path);
-            System.out.println("Loaded " + employees.size() + " employees and " +
-                    leaveRequests.size() + " leave requests");
+        System.out.println("Data loaded successfully from " + path);
+        System.out.println("Loaded " + employees.size() + " employees and " +
+                leaveRequests.size() + " leave requests");
+    }
 
-        } catch (InvalidClassException e) {
-            System.err.println("Error: Incompatible class versions - " + e.getMessage());
-        } catch (StreamCorruptedException e) {
-            System.err.println("Error: Corrupted binary file - " + e.getMessage());
-        } catch (IOException e) {
-            System.err.println("IO Error loading binary data: " + e.getMessage());
-        } catch (ClassNotFoundException e) {
-            System.err.println("Error: Class not found - " + e.getMessage());
-        } catch (Exception e) {
-            System.err.println("Unexpected error loading data: " + e.getMessage());
-        }
+    /**
+     * Drops all in-memory data before a reload; callers hold the write lock.
+     * Request IDs restart above every ID in the status history, so requests
+     * discarded by a reload are never renumbered onto their audit trail.
+     */
+    private void clearState() {
+        employees.clear();
+        leaveRequests.clear();
+        pendingApprovals.clear();
+        departments.clear();
+        departmentStats.clear();
+        intervalIndex.clear();
+        historyIndex.clear();
+        searchIndex.clear();
+        nextRequestId.set(statusHistory.getHighestRequestId() + 1);
     }
 
     public static void main(String[] args) {
@@ -311,17 +1299,22 @@ public class LeaveTrackingSystem {
 
         // Create leave requests
         Employee john = system.getEmployee(101);
-        system.createLeaveRequest(john, LocalDate.now().plusDays(1),
-                LocalDate.now().plusDays(3), "Flu",
-                LeaveRequest.LeaveType.SICK, false);
-
         Employee jane = system.getEmployee(102);
-        system.createLeaveRequest(jane, LocalDate.now().plusDays(5),
-                LocalDate.now().plusDays(10), "Vacation",
-                LeaveRequest.LeaveType.ANNUAL, false);
+        try {
+            system.createLeaveRequest(john, LocalDate.now().plusDays(1),
+                    LocalDate.now().plusDays(3), "Flu",
+                    LeaveRequest.LeaveType.SICK, false);
+
+            system.createLeaveRequest(jane, LocalDate.now().plusDays(5),
+                    LocalDate.now().plusDays(10), "Vacation",
+                    LeaveRequest.LeaveType.ANNUAL, false);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Request not created: " + e.getMessage());
+        }
 
         // Process requests
-        system.processPendingRequests("HR Manager");
+        system.processPendingRequests("HR Manager")
+                .forEach(ApprovalBatchResult::displaySummary);
 
         // Display statistics
         system.displayDepartmentStats();
@@ -335,5 +1328,9 @@ public class LeaveTrackingSystem {
         // Show employee history
         System.out.println("\nJohn's Leave History:");
         system.getEmployeeLeaveHistory(101).forEach(LeaveRequest::displayDetails);
+
+        System.out.println();
+        System.out.print(system.getMetrics().getReport());
+        system.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+/**
+ * Thrown when a new leave request overlaps a pending or approved request
+ * of the same employee. It is an IllegalArgumentException so existing
+ * callers keep working, but lets callers tell a conflict with stored data
+ * apart from invalid input.
+ */
+public class OverlappingLeaveException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+    private final int conflictingRequestId;
+
+    public OverlappingLeaveException(int conflictingRequestId) {
+        super("Leave request overlaps existing request #" + conflictingRequestId);
+        this.conflictingRequestId = conflictingRequestId;
+    }
+
+    public int getConflictingRequestId() {
+        return conflictingRequestId;
+    }
+}
@@ -0,0 +1,15 @@
+import java.time.LocalDate;
+
+public class PaternityLeaveRequest extends LeaveRequest {
+    private static final long serialVersionUID = 1L;
+
+    public PaternityLeaveRequest(int requestId, Employee employee,
+            LocalDate startDate, LocalDate endDate, String reason) {
+        super(requestId, employee, startDate, endDate, reason);
+    }
+
+    @Override
+    public LeaveType getLeaveType() {
+        return LeaveType.PATERNITY;
+    }
+}
\ No newline at end of file
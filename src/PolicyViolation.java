@@ -0,0 +1,28 @@
+/**
+ * One reason a leave request fails its policy: the rule that rejected it
+ * and a message for the employee. Messages never contain commas, so they
+ * can be stored as a denial reason.
+ */
+public class PolicyViolation {
+    private final String rule;
+    private final String message;
+
+    public PolicyViolation(String rule, String message) {
+        this.rule = rule;
+        this.message = message;
+    }
+
+    // Rule name as written in the policy file, e.g. "maxDays"
+    public String getRule() {
+        return rule;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
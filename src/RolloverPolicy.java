@@ -0,0 +1,39 @@
+/**
+ * Year-end rules for one kind of leave balance: how many unused days may
+ * be carried into the new year and how many days are granted on top.
+ * Overdrawn balances are carried in full, so the debt is repaid from the
+ * new grant.
+ */
+public class RolloverPolicy {
+    private final int accrual;
+    private final int carryOverCap;
+
+    public RolloverPolicy(int accrual, int carryOverCap) {
+        if (accrual < 0 || carryOverCap < 0) {
+            throw new IllegalArgumentException("Accrual and carry-over cap must not be negative");
+        }
+        this.accrual = accrual;
+        this.carryOverCap = carryOverCap;
+    }
+
+    // Grants a fresh allowance each year and forfeits whatever was left
+    public static RolloverPolicy reset(int accrual) {
+        return new RolloverPolicy(accrual, 0);
+    }
+
+    public int getAccrual() {
+        return accrual;
+    }
+
+    public int getCarryOverCap() {
+        return carryOverCap;
+    }
+
+    public int carriedOver(int balance) {
+        return Math.min(balance, carryOverCap);
+    }
+
+    public int newBalance(int balance) {
+        return carriedOver(balance) + accrual;
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * One CSV data set split into shard files by employee ID, e.g.
+ * {@code employees.00.csv} to {@code employees.15.csv}.
+ *
+ * Each shard is recovered, read and written on its own fork-join task.
+ * Changes mark the shard of the employee they belong to as dirty, and a
+ * save rewrites only the dirty shards, so persisting one approval writes
+ * one shard file instead of the whole data set. Every shard file is
+ * replaced through {@link AtomicFileWriter}.
+ *
+ * The unsharded file of earlier versions ({@code employees.csv}) is still
+ * read if present. Its rows take precedence over the shards, since it is
+ * only left behind by an unfinished migration or a backup restore, and it
+ * is deleted once every shard has been saved.
+ */
+public class ShardedStorage<T> {
+    private final Path dir;
+    private final String baseName;
+    private final String header;
+    private final int shardCount;
+    private final ToIntFunction<T> employeeIdOf;
+    private final Function<T, String> formatter;
+    private final String indexFormat;
+    // 1 while a shard has changes that are not on disk yet
+    private final AtomicIntegerArray dirty;
+
+    public interface Reader<R> {
+        List<R> read(Path path) throws IOException;
+    }
+
+    public ShardedStorage(Path dir, String baseName, String header, int shardCount,
+            ToIntFunction<T> employeeIdOf, Function<T, String> formatter) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.dir = dir;
+        this.baseName = baseName;
+        this.header = header;
+        this.shardCount = shardCount;
+        this.employeeIdOf = employeeIdOf;
+        this.formatter = formatter;
+        this.indexFormat = "%0" + String.valueOf(shardCount - 1).length() + "d";
+        this.dirty = new AtomicIntegerArray(shardCount);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int shardOf(int employeeId) {
+        return Math.floorMod(employeeId, shardCount);
+    }
+
+    public Path shardPath(int shard) {
+        return dir.resolve(baseName + "." + String.format(indexFormat, shard) + ".csv");
+    }
+
+    // The single file written before the data was sharded
+    public Path legacyPath() {
+        return dir.resolve(baseName + ".csv");
+    }
+
+    public boolean hasLegacyFile() {
+        return Files.exists(legacyPath());
+    }
+
+    public void markDirty(int employeeId) {
+        dirty.set(shardOf(employeeId), 1);
+    }
+
+    public void markAllDirty() {
+        for (int shard = 0; shard < shardCount; shard++) {
+            dirty.set(shard, 1);
+        }
+    }
+
+    // True if every change has been saved
+    public boolean isClean() {
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (dirty.get(shard) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    // Rows of the unsharded file, or an empty list if there is none
+    public <R> List<R> readLegacy(Reader<R> reader) throws IOException {
+        Path path = legacyPath();
+        recover(path);
+        return Files.exists(path) ? reader.read(path) : Collections.emptyList();
+    }
+
+    // Rows of every shard file, indexed by shard; shards without a file are empty
+    public <R> List<List<R>> readShards(Reader<R> reader) throws IOException {
+        try {
+            return IntStream.range(0, shardCount).parallel()
+                    .mapToObj(shard -> {
+                        Path path = shardPath(shard);
+                        try {
+                            recover(path);
+                            return Files.exists(path) ? reader.read(path) : Collections.<R>emptyList();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Puts back the last good version of a shard file left damaged by a crash
+    private static void recover(Path path) {
+        String fileName = path.getFileName().toString();
+        try {
+            switch (AtomicFileWriter.recover(path)) {
+                case RESTORED_BACKUP -> System.err.println("Recovered " + fileName + " from its last good version");
+                case CORRUPT -> System.err.println("Error: " + fileName + " is damaged and has no usable backup");
+                default -> {
+                    // Intact, unverifiable or not created yet
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error checking " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the dirty shards from records, in parallel, and returns the
+     * bytes written. Shards that fail stay dirty for the next save; the
+     * first failure is rethrown once the others are done.
+     */
+    public long save(Collection<T> records) throws IOException {
+        List<List<T>> buckets = new ArrayList<>(Collections.nCopies(shardCount, (List<T>) null));
+        int[] shards = IntStream.range(0, shardCount).filter(shard -> dirty.getAndSet(shard, 0) != 0).toArray();
+        if (shards.length == 0)
+            return 0;
+        int expected = records.size() / shardCount + 16;
+        for (int shard : shards) {
+            buckets.set(shard, new ArrayList<>(expected));
+        }
+        // Flags are cleared before the pass, so a change it misses marks its shard again
+        for (T record : records) {
+            List<T> bucket = buckets.get(shardOf(employeeIdOf.applyAsInt(record)));
+            if (bucket != null) {
+                bucket.add(record);
+            }
+        }
+
+        LongAdder bytes = new LongAdder();
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        IntStream.of(shards).parallel().forEach(shard -> {
+            try {
+                bytes.add(write(shard, buckets.get(shard)));
+            } catch (IOException e) {
+                dirty.set(shard, 1);
+                failure.compareAndSet(null, e);
+            }
+        });
+        // One directory sync makes every shard rename durable
+        AtomicFileWriter.syncDirectory(dir.toAbsolutePath());
+        if (failure.get() != null)
+            throw failure.get();
+        return bytes.sum();
+    }
+
+    private long write(int shard, List<T> rows) throws IOException {
+        Path path = shardPath(shard);
+        AtomicFileWriter.write(path, writer -> {
+            writer.write(header + "\n");
+            for (T row : rows) {
+                writer.write(formatter.apply(row));
+            }
+        }, false);
+        return Files.size(path);
+    }
+
+    // Deletes the unsharded file once its rows are in the shards
+    public void deleteLegacyFile() throws IOException {
+        delete(legacyPath());
+    }
+
+    // Deletes every shard file, e.g. before a restore replaces the data set
+    public void deleteShards() throws IOException {
+        for (int shard = 0; shard < shardCount; shard++) {
+            delete(shardPath(shard));
+        }
+    }
+
+    // The backup goes first, so recovery cannot bring the file back
+    private static void delete(Path path) throws IOException {
+        Files.deleteIfExists(AtomicFileWriter.backupOf(path));
+        Files.deleteIfExists(path);
+    }
+}
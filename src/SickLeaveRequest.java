@@ -18,12 +18,4 @@ public class SickLeaveRequest extends LeaveRequest {
     public LeaveType getLeaveType() {
         return LeaveType.SICK;
     }
-
-    @Override
-    public boolean isValid() {
-        if (hasMedicalCertificate) {
-            return true;
-        }
-        return getNumberOfDays() <= 3;
-    }
 }
\ No newline at end of file
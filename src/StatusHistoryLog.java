@@ -0,0 +1,593 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Append-only status history shared by all requests of a system.
+ *
+ * Changes are kept in parallel primitive arrays: statuses as ordinals,
+ * timestamps as epoch milliseconds and approvers as indexes into a
+ * dictionary. Each entry links to the previous entry of the same request,
+ * and a dense array indexed by request ID points at the latest one, so a
+ * request's history costs about 22 bytes per change and no objects.
+ *
+ * The arrays are split into stripes by request ID, each with its own
+ * monitor, so changes to different requests do not contend; approvals of
+ * different employees append in parallel. A request's changes all live in
+ * one stripe and keep their order.
+ *
+ * When created with a path, appended changes are buffered per stripe and
+ * written to the file by {@link #flush()}, and read back by
+ * {@link #load()}. File format (big-endian): magic "LTSH", version u16,
+ * then records tagged APPROVER (u16 length + UTF-8 name, numbered in order)
+ * or CHANGE (request id, from u8, to u8, epoch millis, approver index).
+ * An approver's record is always written before the changes naming it.
+ */
+public class StatusHistoryLog {
+    private static final int MAGIC = 0x4C545348;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 6;
+    private static final byte TAG_APPROVER = 1;
+    private static final byte TAG_CHANGE = 2;
+    private static final int CHANGE_RECORD_SIZE = 19;
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+    // Stripes of a log with a file; one bit each in pendingStripes
+    private static final int STRIPE_COUNT = 64;
+
+    // Ordinal stored for the "from" status of a request's first change
+    private static final byte CREATED = -1;
+    private static final int NONE = -1;
+    private static final LeaveRequest.Status[] STATUSES = LeaveRequest.Status.values();
+
+    private final Path path;
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    // Stripes with buffered records, as a bit mask
+    private final AtomicLong pendingStripes = new AtomicLong();
+    private volatile boolean recovering;
+    // Guards the channel and orders whole flushes
+    private final Object fileLock = new Object();
+    private FileChannel channel;
+    // Records drained from the stripes, and those on their way to the file;
+    // what a failed write leaves in outgoing goes first next time
+    private ByteBuffer drained = ByteBuffer.allocate(1024);
+    private ByteBuffer outgoing = ByteBuffer.allocate(1024);
+
+    // Approver dictionary, shared by all stripes; grown under approverLock
+    private final Object approverLock = new Object();
+    private volatile String[] approvers = new String[0];
+    private final Map<String, Integer> approverIndexByName = new ConcurrentHashMap<>();
+    private ByteBuffer pendingApprovers = ByteBuffer.allocate(256);
+
+    // Growable list of entry indexes for one approver
+    private static class EntryList {
+        int[] entries = new int[4];
+        int size;
+
+        void add(int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+    }
+
+    /**
+     * The changes of the requests whose IDs fall in one stripe. Entries are
+     * indexed within the stripe and requests by ID / stripe count. All
+     * access holds the stripe's monitor.
+     */
+    private static class Stripe {
+        int size;
+        int[] requestIds = new int[16];
+        byte[] fromStatuses = new byte[16];
+        byte[] toStatuses = new byte[16];
+        long[] timestamps = new long[16];
+        int[] approverIndexes = new int[16];
+        int[] previousEntries = new int[16];
+        int[] lastEntryBySlot = new int[0];
+        int highestRequestId;
+        EntryList[] entriesByApprover = new EntryList[0];
+        // Records not yet written to the file; null for a log without one
+        ByteBuffer pending;
+
+        // Buffers the change for the file unless it was read from there
+        void add(int requestId, int slot, byte from, byte to, long timestampMillis, int approver,
+                boolean buffer) {
+            if (size == requestIds.length) {
+                int capacity = size + (size >> 1);
+                requestIds = Arrays.copyOf(requestIds, capacity);
+                fromStatuses = Arrays.copyOf(fromStatuses, capacity);
+                toStatuses = Arrays.copyOf(toStatuses, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                approverIndexes = Arrays.copyOf(approverIndexes, capacity);
+                previousEntries = Arrays.copyOf(previousEntries, capacity);
+            }
+            if (slot >= lastEntryBySlot.length) {
+                int oldLength = lastEntryBySlot.length;
+                int length = Math.max(slot + 1, oldLength * 2);
+                lastEntryBySlot = Arrays.copyOf(lastEntryBySlot, length);
+                Arrays.fill(lastEntryBySlot, oldLength, length, NONE);
+            }
+            if (approver >= entriesByApprover.length) {
+                entriesByApprover = Arrays.copyOf(entriesByApprover,
+                        Math.max(approver + 1, entriesByApprover.length * 2));
+            }
+
+            int entry = size++;
+            highestRequestId = Math.max(highestRequestId, requestId);
+            requestIds[entry] = requestId;
+            fromStatuses[entry] = from;
+            toStatuses[entry] = to;
+            timestamps[entry] = timestampMillis;
+            approverIndexes[entry] = approver;
+            previousEntries[entry] = lastEntryBySlot[slot];
+            lastEntryBySlot[slot] = entry;
+            if (entriesByApprover[approver] == null) {
+                entriesByApprover[approver] = new EntryList();
+            }
+            entriesByApprover[approver].add(entry);
+            if (buffer && pending != null) {
+                ensurePending(CHANGE_RECORD_SIZE);
+                pending.put(TAG_CHANGE).putInt(requestId).put(from).put(to)
+                        .putLong(timestampMillis).putInt(approver);
+            }
+        }
+
+        int lastEntry(int slot) {
+            return slot < lastEntryBySlot.length ? lastEntryBySlot[slot] : NONE;
+        }
+
+        boolean hasChange(int slot, byte to) {
+            for (int e = lastEntry(slot); e != NONE; e = previousEntries[e]) {
+                if (toStatuses[e] == to)
+                    return true;
+            }
+            return false;
+        }
+
+        boolean hasEntry(int slot, byte to, long timestampMillis) {
+            for (int e = lastEntry(slot); e != NONE; e = previousEntries[e]) {
+                if (toStatuses[e] == to && timestamps[e] == timestampMillis)
+                    return true;
+            }
+            return false;
+        }
+
+        void ensurePending(int needed) {
+            pending = StatusHistoryLog.ensureRemaining(pending, needed);
+        }
+
+        void clear() {
+            size = 0;
+            highestRequestId = 0;
+            Arrays.fill(lastEntryBySlot, NONE);
+            entriesByApprover = new EntryList[0];
+            if (pending != null) {
+                pending.clear();
+            }
+        }
+    }
+
+    // A log kept in memory only, e.g. for a single request outside a system
+    public StatusHistoryLog() {
+        this(null);
+    }
+
+    public StatusHistoryLog(Path path) {
+        this.path = path;
+        int stripeCount = path == null ? 1 : STRIPE_COUNT;
+        this.stripeShift = Integer.numberOfTrailingZeros(stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+            if (path != null) {
+                stripes[i].pending = ByteBuffer.allocate(1024);
+            }
+        }
+    }
+
+    private Stripe stripeFor(int requestId) {
+        return stripes[requestId & (stripes.length - 1)];
+    }
+
+    private int slotOf(int requestId) {
+        return requestId >>> stripeShift;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    // Highest request ID with a logged change, or 0; new requests must be numbered above it
+    public int getHighestRequestId() {
+        int highest = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                highest = Math.max(highest, stripe.highestRequestId);
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * Appends one change. {@code from} is null for the change that created
+     * the request. While recovering, a change to a status the request has
+     * already reached is skipped, since it was logged before a crash.
+     */
+    public void append(int requestId, LeaveRequest.Status from, LeaveRequest.Status to,
+            long timestampMillis, String changedBy) {
+        append(requestId, from, to, timestampMillis, changedBy, false);
+    }
+
+    // With onlyIfMissing, skips a change the request already has at the same time
+    private void append(int requestId, LeaveRequest.Status from, LeaveRequest.Status to,
+            long timestampMillis, String changedBy, boolean onlyIfMissing) {
+        if (requestId < 0) {
+            throw new IllegalArgumentException("Request IDs must not be negative");
+        }
+        int approver = approverIndex(changedBy);
+        byte toOrdinal = (byte) to.ordinal();
+        int slot = slotOf(requestId);
+        Stripe stripe = stripeFor(requestId);
+        boolean full;
+        synchronized (stripe) {
+            if (recovering && stripe.hasChange(slot, toOrdinal))
+                return;
+            if (onlyIfMissing && stripe.hasEntry(slot, toOrdinal, timestampMillis))
+                return;
+            stripe.add(requestId, slot, from == null ? CREATED : (byte) from.ordinal(), toOrdinal,
+                    timestampMillis, approver, true);
+            full = stripe.pending != null && stripe.pending.position() >= FLUSH_THRESHOLD;
+        }
+        if (path != null) {
+            pendingStripes.getAndAccumulate(1L << (requestId & (stripes.length - 1)), (a, b) -> a | b);
+        }
+        if (full) {
+            try {
+                flush();
+            } catch (IOException e) {
+                // The records stay buffered and are retried on the next flush
+                System.err.println("Error writing status history: " + e.getMessage());
+            }
+        }
+    }
+
+    private int approverIndex(String changedBy) {
+        String name = changedBy == null ? "" : changedBy;
+        Integer index = approverIndexByName.get(name);
+        if (index != null)
+            return index;
+        synchronized (approverLock) {
+            index = approverIndexByName.get(name);
+            if (index == null) {
+                if (path != null) {
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    if (bytes.length > 0xFFFF) {
+                        throw new IllegalArgumentException("Approver name too long: " + bytes.length + " bytes");
+                    }
+                    pendingApprovers = ensureRemaining(pendingApprovers, 3 + bytes.length);
+                    pendingApprovers.put(TAG_APPROVER).putShort((short) bytes.length).put(bytes);
+                }
+                index = addApprover(name);
+            }
+            return index;
+        }
+    }
+
+    // Callers hold approverLock
+    private int addApprover(String name) {
+        String[] grown = Arrays.copyOf(approvers, approvers.length + 1);
+        int index = approvers.length;
+        grown[index] = name;
+        approvers = grown;
+        approverIndexByName.put(name, index);
+        return index;
+    }
+
+    // True if the request has ever changed to the given status
+    public boolean hasChange(int requestId, LeaveRequest.Status to) {
+        Stripe stripe = stripeFor(requestId);
+        synchronized (stripe) {
+            return stripe.hasChange(slotOf(requestId), (byte) to.ordinal());
+        }
+    }
+
+    // Time of the change that created the request, or -1 if none was logged
+    public long createdAtMillis(int requestId) {
+        Stripe stripe = stripeFor(requestId);
+        synchronized (stripe) {
+            long created = -1;
+            for (int e = stripe.lastEntry(slotOf(requestId)); e != NONE; e = stripe.previousEntries[e]) {
+                if (stripe.fromStatuses[e] == CREATED) {
+                    created = stripe.timestamps[e];
+                }
+            }
+            return created;
+        }
+    }
+
+    // The request's changes, oldest first
+    public List<LeaveRequest.StatusChange> forRequest(int requestId) {
+        List<LeaveRequest.StatusChange> changes = new ArrayList<>();
+        if (requestId < 0)
+            return changes;
+        Stripe stripe = stripeFor(requestId);
+        synchronized (stripe) {
+            for (int e = stripe.lastEntry(slotOf(requestId)); e != NONE; e = stripe.previousEntries[e]) {
+                changes.add(toStatusChange(stripe, e));
+            }
+        }
+        Collections.reverse(changes);
+        return changes;
+    }
+
+    /**
+     * Changes made by the approver at or after {@code from} and before
+     * {@code to}, oldest first.
+     */
+    public List<LeaveRequest.StatusChange> findByApprover(String approver, Instant from, Instant to) {
+        List<LeaveRequest.StatusChange> changes = new ArrayList<>();
+        Integer index = approverIndexByName.get(approver);
+        if (index == null)
+            return changes;
+
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                EntryList entries = index < stripe.entriesByApprover.length ? stripe.entriesByApprover[index] : null;
+                if (entries == null)
+                    continue;
+                for (int i = 0; i < entries.size; i++) {
+                    int e = entries.entries[i];
+                    if (stripe.timestamps[e] >= fromMillis && stripe.timestamps[e] < toMillis) {
+                        changes.add(toStatusChange(stripe, e));
+                    }
+                }
+            }
+        }
+        changes.sort((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()));
+        return changes;
+    }
+
+    /**
+     * Visits every change. Each request's changes come in the order they
+     * were appended; changes of different requests may not.
+     */
+    public void forEach(Consumer<LeaveRequest.StatusChange> action) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int e = 0; e < stripe.size; e++) {
+                    action.accept(toStatusChange(stripe, e));
+                }
+            }
+        }
+    }
+
+    private LeaveRequest.StatusChange toStatusChange(Stripe stripe, int entry) {
+        byte from = stripe.fromStatuses[entry];
+        return new LeaveRequest.StatusChange(stripe.requestIds[entry],
+                from == CREATED ? null : STATUSES[from], STATUSES[stripe.toStatuses[entry]],
+                stripe.timestamps[entry], approvers[stripe.approverIndexes[entry]]);
+    }
+
+    /**
+     * While recovering, changes the request already reached are not logged
+     * again. Used when replaying a journal over a log that may be ahead.
+     */
+    public void setRecovering(boolean recovering) {
+        this.recovering = recovering;
+    }
+
+    /**
+     * Appends the changes of {@code other} that this log does not hold yet,
+     * matched by request, target status and timestamp, and flushes them.
+     * Entries already logged are never removed. Returns the number added.
+     */
+    public int appendMissing(StatusHistoryLog other) throws IOException {
+        int before = size();
+        other.forEach(change -> append(change.getRequestId(), change.getFrom(), change.getTo(),
+                change.getTimestamp().toEpochMilli(), change.getChangedBy(), true));
+        flush();
+        return size() - before;
+    }
+
+    private void clearEntries() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+        pendingStripes.set(0);
+        synchronized (approverLock) {
+            approvers = new String[0];
+            approverIndexByName.clear();
+            pendingApprovers.clear();
+        }
+    }
+
+    /**
+     * Reads the file into memory, replacing any entries held. A record torn
+     * by a crash at the end of the file is dropped.
+     */
+    public void load() throws IOException {
+        synchronized (fileLock) {
+            clearEntries();
+            drained.clear();
+            outgoing.clear();
+            if (path == null || !Files.exists(path))
+                return;
+            long validLength = read();
+            if (Files.size(path) > validLength) {
+                try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    out.truncate(validLength);
+                }
+            }
+        }
+    }
+
+    // Adds the file's records; returns the length of its intact prefix
+    private long read() throws IOException {
+        long validLength = HEADER_SIZE;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a status history log: " + path);
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported status history version " + version);
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    byte tag = buffer.get();
+                    if (tag == TAG_APPROVER) {
+                        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                        buffer.get(bytes);
+                        synchronized (approverLock) {
+                            addApprover(new String(bytes, StandardCharsets.UTF_8));
+                        }
+                    } else if (tag == TAG_CHANGE) {
+                        int requestId = buffer.getInt();
+                        byte from = buffer.get();
+                        byte to = buffer.get();
+                        long timestamp = buffer.getLong();
+                        int approver = buffer.getInt();
+                        if (approver < 0 || approver >= approvers.length || requestId < 0) {
+                            throw new IOException("Corrupted status history record at " + validLength);
+                        }
+                        Stripe stripe = stripeFor(requestId);
+                        synchronized (stripe) {
+                            stripe.add(requestId, slotOf(requestId), from, to, timestamp, approver, false);
+                        }
+                    } else {
+                        throw new IOException("Corrupted status history record at " + validLength);
+                    }
+                    validLength = buffer.position();
+                }
+            } catch (BufferUnderflowException e) {
+                System.err.println("Dropping torn status history record at " + validLength);
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Writes buffered records to the file. Changes are drained from the
+     * stripes before new approvers, so every approver a written change
+     * names is written with it or earlier.
+     */
+    public void flush() throws IOException {
+        if (path == null)
+            return;
+        synchronized (fileLock) {
+            long mask = pendingStripes.getAndSet(0);
+            while (mask != 0) {
+                Stripe stripe = stripes[Long.numberOfTrailingZeros(mask)];
+                mask &= mask - 1;
+                synchronized (stripe) {
+                    stripe.pending.flip();
+                    drained = ensureRemaining(drained, stripe.pending.remaining());
+                    drained.put(stripe.pending);
+                    stripe.pending.clear();
+                }
+            }
+            synchronized (approverLock) {
+                pendingApprovers.flip();
+                outgoing = ensureRemaining(outgoing, pendingApprovers.remaining());
+                outgoing.put(pendingApprovers);
+                pendingApprovers.clear();
+            }
+            drained.flip();
+            outgoing = ensureRemaining(outgoing, drained.remaining());
+            outgoing.put(drained);
+            drained.clear();
+            if (outgoing.position() == 0)
+                return;
+
+            FileChannel ch = openChannel();
+            outgoing.flip();
+            try {
+                writeFully(ch, outgoing);
+            } finally {
+                // Keeps whatever was not written for the next flush
+                outgoing.compact();
+            }
+        }
+    }
+
+    // Writes buffered records and forces them to disk
+    public void sync() throws IOException {
+        flush();
+        synchronized (fileLock) {
+            if (channel != null) {
+                channel.force(false);
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        sync();
+        synchronized (fileLock) {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    // Callers hold fileLock
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            boolean isNew = !Files.exists(path) || Files.size(path) == 0;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (isNew) {
+                writeFully(channel, header());
+            }
+        }
+        return channel;
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION).flip();
+    }
+
+    // The buffer, or a larger copy of it, with room for needed more bytes
+    private static ByteBuffer ensureRemaining(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed)
+            return buffer;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
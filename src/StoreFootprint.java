@@ -0,0 +1,54 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prints the heap used by the system's employee map, a
+ * {@link ConcurrentIntObjectMap}, next to the boxed-key ConcurrentHashMap
+ * it replaced, for the same synthetic employees.
+ *
+ * Usage: java StoreFootprint [employees]
+ * Run with a fixed heap (e.g. -Xms4g -Xmx4g) for stable numbers.
+ */
+public class StoreFootprint {
+    public static void main(String[] args) {
+        int employeeCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        System.out.printf("%d employees%n", employeeCount);
+
+        long base = usedHeap();
+        Map<Integer, Employee> employeeMap = new ConcurrentHashMap<>();
+        for (int id = 1; id <= employeeCount; id++) {
+            employeeMap.put(id, newEmployee(id));
+        }
+        long employeeMapBytes = usedHeap() - base;
+
+        base = usedHeap();
+        ConcurrentIntObjectMap<Employee> employeeStore = new ConcurrentIntObjectMap<>();
+        for (int id = 1; id <= employeeCount; id++) {
+            employeeStore.put(id, newEmployee(id));
+        }
+        long employeeStoreBytes = usedHeap() - base;
+
+        report("Employees: ConcurrentHashMap<Integer, Employee>", employeeMapBytes, employeeCount);
+        report("Employees: ConcurrentIntObjectMap<Employee>", employeeStoreBytes, employeeCount);
+
+        // Keep everything reachable until all measurements are taken
+        System.out.println(employeeMap.size() + employeeStore.size() > 0 ? "" : "empty");
+    }
+
+    private static Employee newEmployee(int id) {
+        return new Employee(id, "Employee " + id, "Dept" + (id % 40), 20, 10);
+    }
+
+    private static void report(String label, long bytes, int count) {
+        System.out.printf("%-50s %,12d bytes  %,8.1f bytes/entry%n", label, bytes, (double) bytes / count);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes employees.csv and leave_requests.csv with synthetic data for
+ * benchmarks and load tests. The same seed always produces the same files.
+ *
+ * Each employee's requests follow one another without overlapping, and
+ * roughly one in {@code pendingEvery} requests is left pending.
+ *
+ * Usage: java SyntheticDataGenerator dataDir employees requests [seed]
+ */
+public class SyntheticDataGenerator {
+    private static final String[] DEPARTMENTS = {
+            "Engineering", "HR", "Finance", "Sales", "Marketing", "Support",
+            "Legal", "Operations", "Research", "Facilities", "Security", "Design"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Alex", "Sam", "Jordan", "Taylor", "Morgan", "Casey", "Riley", "Jamie",
+            "Avery", "Quinn", "Robin", "Drew", "Kai", "Noa", "Remy", "Sky"
+    };
+    private static final String[] LAST_NAMES = {
+            "Smith", "Jones", "Garcia", "Chen", "Patel", "Kim", "Novak", "Silva",
+            "Okafor", "Haddad", "Larsen", "Moreau", "Rossi", "Tanaka", "Kowalski", "Ivanov"
+    };
+    private static final String[] REASONS = {
+            "Vacation", "Family event", "Flu", "Medical appointment", "Travel", "Personal"
+    };
+    private static final LocalDate FIRST_START = LocalDate.of(2020, 1, 6);
+
+    private final long seed;
+    private final int pendingEvery;
+
+    public SyntheticDataGenerator(long seed, int pendingEvery) {
+        this.seed = seed;
+        this.pendingEvery = pendingEvery;
+    }
+
+    // Employee IDs run from 1 to employeeCount
+    public void generate(Path dataDir, int employeeCount, int requestCount) throws IOException {
+        Files.createDirectories(dataDir);
+        Random random = new Random(seed);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(dataDir.resolve("employees.csv"))) {
+            writer.write("ID,Name,Department,AnnualLeave,SickLeave\n");
+            for (int id = 1; id <= employeeCount; id++) {
+                writer.write(id + "," + FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                        + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " " + id + ","
+                        + DEPARTMENTS[random.nextInt(DEPARTMENTS.length)] + ","
+                        + (1000 + random.nextInt(1000)) + "," + (500 + random.nextInt(500)) + "\n");
+            }
+        }
+
+        // Next free start day per employee keeps each employee's requests disjoint
+        long[] nextFreeDay = new long[employeeCount + 1];
+        Arrays.fill(nextFreeDay, FIRST_START.toEpochDay());
+
+        try (BufferedWriter writer = Files.newBufferedWriter(dataDir.resolve("leave_requests.csv"))) {
+            writer.write("RequestID,EmployeeID,StartDate,EndDate,Reason,Status,Type,MedicalCertificate\n");
+            for (int id = 1; id <= requestCount; id++) {
+                int employeeId = 1 + random.nextInt(employeeCount);
+                boolean sick = random.nextInt(4) == 0;
+                long start = nextFreeDay[employeeId] + random.nextInt(20);
+                int length = sick ? 1 + random.nextInt(3) : 1 + random.nextInt(10);
+                nextFreeDay[employeeId] = start + length;
+
+                String status = random.nextInt(pendingEvery) == 0 ? "PENDING"
+                        : random.nextInt(10) == 0 ? "REJECTED" : "APPROVED";
+                writer.write(id + "," + employeeId + ","
+                        + LocalDate.ofEpochDay(start) + "," + LocalDate.ofEpochDay(start + length - 1) + ","
+                        + REASONS[random.nextInt(REASONS.length)] + "," + status + ","
+                        + (sick ? "SICK" : "ANNUAL") + "," + (sick && random.nextBoolean()) + "\n");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: java SyntheticDataGenerator dataDir employees requests [seed]");
+            return;
+        }
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        new SyntheticDataGenerator(seed, 10).generate(Paths.get(args[0]),
+                Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        System.out.println("Synthetic data written to " + args[0]);
+    }
+}
@@ -0,0 +1,15 @@
+import java.time.LocalDate;
+
+public class UnpaidLeaveRequest extends LeaveRequest {
+    private static final long serialVersionUID = 1L;
+
+    public UnpaidLeaveRequest(int requestId, Employee employee,
+            LocalDate startDate, LocalDate endDate, String reason) {
+        super(requestId, employee, startDate, endDate, reason);
+    }
+
+    @Override
+    public LeaveType getLeaveType() {
+        return LeaveType.UNPAID;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts working days between two dates for a weekend rule and a set of
+ * public holidays.
+ *
+ * Weekends are handled with whole-week arithmetic on epoch days plus a
+ * precomputed table for the partial week. Holidays are stored per year as
+ * a bitset by day of year with a running count of the ones that fall on a
+ * working day, so a range within one year costs two array lookups.
+ */
+public class WorkingDayCalendar {
+    // Every day counts, which matches plain calendar-day arithmetic
+    public static final WorkingDayCalendar ALL_DAYS =
+            new WorkingDayCalendar(EnumSet.noneOf(DayOfWeek.class), Collections.emptyList());
+
+    public static final WorkingDayCalendar MONDAY_TO_FRIDAY =
+            new WorkingDayCalendar(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY), Collections.emptyList());
+
+    private final Set<DayOfWeek> weekendDays;
+    private final int weekendsPerWeek;
+    // partialWeekend[d][n]: weekend days among n consecutive days starting on day-of-week d
+    private final int[][] partialWeekend = new int[7][7];
+    private final Map<Integer, YearHolidays> holidaysByYear = new HashMap<>();
+
+    private static class YearHolidays {
+        final BitSet days = new BitSet(367);
+        // workingHolidaysBefore[i]: holidays on working days among day-of-year 1..i
+        int[] workingHolidaysBefore;
+    }
+
+    public WorkingDayCalendar(Set<DayOfWeek> weekendDays, Collection<LocalDate> holidays) {
+        this.weekendDays = weekendDays.isEmpty()
+                ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(weekendDays);
+        this.weekendsPerWeek = this.weekendDays.size();
+
+        for (int first = 0; first < 7; first++) {
+            for (int n = 1; n < 7; n++) {
+                int day = (first + n - 1) % 7;
+                partialWeekend[first][n] = partialWeekend[first][n - 1]
+                        + (isWeekend(DayOfWeek.of(day + 1)) ? 1 : 0);
+            }
+        }
+
+        for (LocalDate holiday : holidays) {
+            holidaysByYear.computeIfAbsent(holiday.getYear(), y -> new YearHolidays())
+                    .days.set(holiday.getDayOfYear());
+        }
+        holidaysByYear.forEach((year, yearHolidays) -> {
+            int length = LocalDate.ofYearDay(year, 1).lengthOfYear();
+            int[] counts = new int[length + 1];
+            for (int day = 1; day <= length; day++) {
+                boolean counted = yearHolidays.days.get(day)
+                        && !isWeekend(LocalDate.ofYearDay(year, day).getDayOfWeek());
+                counts[day] = counts[day - 1] + (counted ? 1 : 0);
+            }
+            yearHolidays.workingHolidaysBefore = counts;
+        });
+    }
+
+    // Same weekend rule with extra holidays, e.g. a regional calendar
+    public WorkingDayCalendar withHolidays(Collection<LocalDate> extraHolidays) {
+        List<LocalDate> all = new ArrayList<>(extraHolidays);
+        holidaysByYear.forEach((year, yearHolidays) -> yearHolidays.days.stream()
+                .forEach(day -> all.add(LocalDate.ofYearDay(year, day))));
+        return new WorkingDayCalendar(weekendDays, all);
+    }
+
+    public boolean isWeekend(DayOfWeek day) {
+        return weekendDays.contains(day);
+    }
+
+    public boolean isHoliday(LocalDate date) {
+        YearHolidays yearHolidays = holidaysByYear.get(date.getYear());
+        return yearHolidays != null && yearHolidays.days.get(date.getDayOfYear());
+    }
+
+    public boolean isWorkingDay(LocalDate date) {
+        return !isWeekend(date.getDayOfWeek()) && !isHoliday(date);
+    }
+
+    // Calendar days in [start, end], both inclusive
+    public static int countDays(LocalDate start, LocalDate end) {
+        return (int) (end.toEpochDay() - start.toEpochDay() + 1);
+    }
+
+    // Working days in [start, end], both inclusive; 0 if end precedes start
+    public int countWorkingDays(LocalDate start, LocalDate end) {
+        long first = start.toEpochDay();
+        long last = end.toEpochDay();
+        if (last < first)
+            return 0;
+
+        long days = last - first + 1;
+        long weekend = (days / 7) * weekendsPerWeek
+                + partialWeekend[start.getDayOfWeek().ordinal()][(int) (days % 7)];
+        return (int) (days - weekend - workingHolidays(start, end));
+    }
+
+    private int workingHolidays(LocalDate start, LocalDate end) {
+        if (holidaysByYear.isEmpty())
+            return 0;
+        int total = 0;
+        for (int year = start.getYear(); year <= end.getYear(); year++) {
+            YearHolidays yearHolidays = holidaysByYear.get(year);
+            if (yearHolidays == null)
+                continue;
+            int from = year == start.getYear() ? start.getDayOfYear() : 1;
+            int to = year == end.getYear() ? end.getDayOfYear() : yearHolidays.workingHolidaysBefore.length - 1;
+            total += yearHolidays.workingHolidaysBefore[to] - yearHolidays.workingHolidaysBefore[from - 1];
+        }
+        return total;
+    }
+}